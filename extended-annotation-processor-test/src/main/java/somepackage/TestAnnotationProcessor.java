@@ -14,7 +14,7 @@ import com.github.t1.exap.generator.TypeGenerator;
 import com.github.t1.exap.reflection.*;
 
 @SupportedSourceVersion(RELEASE_8)
-@SupportedAnnotationClasses({ MarkerAnnotation.class })
+@SupportedAnnotationClasses(value = { MarkerAnnotation.class }, incremental = Incremental.AGGREGATING)
 public class TestAnnotationProcessor extends ExtendedAbstractProcessor {
     private static final Logger log = LoggerFactory.getLogger(TestAnnotationProcessor.class);
 
@@ -62,6 +62,7 @@ public class TestAnnotationProcessor extends ExtendedAbstractProcessor {
     private void generateClass(Round round) {
         try (TypeGenerator typeGenerator = round.getPackageOf(this.getClass()).openTypeGenerator("GeneratedClass")) {
             Type annotatedClass = annotatedClass(round);
+            typeGenerator.addOriginatingElement(annotatedClass);
             typeGenerator.addField("value").type(annotatedClass);
             typeGenerator.addMethod("method0").body("return value;").returnType(annotatedClass);
         }
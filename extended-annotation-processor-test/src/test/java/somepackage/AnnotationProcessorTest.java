@@ -8,6 +8,7 @@ import org.junit.Test;
 
 public class AnnotationProcessorTest {
     private static final Path RESOURCES = Paths.get("src/test/resources");
+    private static final Path CLASSES = Paths.get("target/classes");
     private static final Path TEST_CLASSES = Paths.get("target/test-classes");
     private static final Path GENERATED_TEST_SOURCES = Paths.get("target/generated-test-sources/test-annotations");
 
@@ -57,4 +58,10 @@ public class AnnotationProcessorTest {
                 + "\n"
                 + "}\n");
     }
+
+    @Test
+    public void shouldHaveRegisteredIncrementalProcessor() {
+        assertThat(CLASSES.resolve("META-INF/gradle/incremental.annotation.processors"))
+                .hasContent("somepackage.TestAnnotationProcessor,aggregating\n");
+    }
 }
@@ -0,0 +1,66 @@
+package com.github.t1.exap;
+
+import static java.util.Collections.*;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.util.*;
+
+/**
+ * A multimap from the qualified name of an annotation type to all elements annotated with it, i.e. the types,
+ * packages, methods, fields, and parameters in the root elements of a round. It's built in a single traversal, so
+ * querying for many annotations doesn't walk the round again and again, as {@link
+ * javax.annotation.processing.RoundEnvironment#getElementsAnnotatedWith(Class)} does.
+ */
+class AnnotationIndex {
+    static AnnotationIndex of(Iterable<? extends Element> rootElements, Elements elements) {
+        AnnotationIndex index = new AnnotationIndex();
+        new ElementScanner8<Void, Void>() {
+            @Override
+            public Void scan(Element element, Void p) {
+                index.add(element, elements);
+                return super.scan(element, p);
+            }
+
+            /** the types of a package are root elements of their own, if they are part of the round */
+            @Override
+            public Void visitPackage(PackageElement e, Void p) {
+                return null;
+            }
+        }.scan(rootElements, null);
+        return index;
+    }
+
+    private final Map<String, List<Element>> map = new HashMap<>();
+
+    private AnnotationIndex() {}
+
+    private void add(Element element, Elements elements) {
+        // only types can inherit annotations, and that's more expensive to resolve
+        List<? extends AnnotationMirror> mirrors = (element instanceof TypeElement)
+                ? elements.getAllAnnotationMirrors(element) : element.getAnnotationMirrors();
+        for (AnnotationMirror mirror : mirrors)
+            map.computeIfAbsent(nameOf(mirror), k -> new ArrayList<>()).add(element);
+    }
+
+    private String nameOf(AnnotationMirror mirror) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+
+    /** javac also uses the canonical name to look up the annotation type */
+    public List<Element> get(Class<? extends Annotation> type) {
+        return get(type.getCanonicalName());
+    }
+
+    /** The qualified names of all annotation types found */
+    public Set<String> annotationTypeNames() {
+        return unmodifiableSet(map.keySet());
+    }
+
+    public List<Element> get(String annotationTypeName) {
+        List<Element> list = map.get(annotationTypeName);
+        return (list == null) ? emptyList() : unmodifiableList(list);
+    }
+}
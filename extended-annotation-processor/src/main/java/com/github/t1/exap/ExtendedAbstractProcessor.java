@@ -1,8 +1,9 @@
 package com.github.t1.exap;
 
 import static javax.tools.Diagnostic.Kind.*;
+import static javax.tools.StandardLocation.*;
 
-import java.io.Writer;
+import java.io.*;
 import java.lang.annotation.Annotation;
 import java.util.*;
 
@@ -11,6 +12,9 @@ import javax.lang.model.element.*;
 
 import org.slf4j.*;
 
+import com.github.t1.exap.reflection.*;
+import com.github.t1.exap.reflection.Instrumentation.Stopwatch;
+
 /**
  * Extends the {@link AbstractProcessor} with the handling for the {@link SupportedAnnotationClasses} annotation and
  * other convenience methods.
@@ -19,18 +23,47 @@ public abstract class ExtendedAbstractProcessor extends AbstractProcessor {
     protected final Logger log = LoggerFactory.getLogger(getClass());
 
     private int roundNumber = -1;
+    private Boolean skipEmptyRounds = null;
+    private final AnnotationTypeCache annotationTypes = new AnnotationTypeCache();
+    private OutputCache outputCache;
+    private boolean outputCacheResolved = false;
+    private Instrumentation instrumentation;
+    private boolean instrumentationResolved = false;
 
     /** use {@link #process(Round)} */
     @Override
     final public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
         ++roundNumber;
+        Instrumentation instrumentation = instrumentation();
+        Stopwatch stopwatch = (instrumentation == null) ? null : instrumentation.start();
 
         log.debug("begin round {} (final = {}) of {}", +roundNumber, roundEnv.processingOver(), name());
 
         try {
-            boolean claimed = process(new Round(log, processingEnv, roundEnv, roundNumber));
-
-            log.debug("end round {} of {}", roundNumber, name());
+            boolean skip = annotations.isEmpty() && skipEmptyRounds();
+            if (skip && !roundEnv.processingOver()) {
+                log.debug("skip empty round {} of {}", roundNumber, name());
+                if (instrumentation != null)
+                    instrumentation.round(roundNumber, stopwatch.stop());
+                return false;
+            }
+            Round round = new Round(log, processingEnv, roundEnv, roundNumber, annotationTypes, outputCache(),
+                    incremental(), instrumentation);
+            boolean claimed = !skip && process(round, instrumentation);
+            if (round.isLast()) {
+                processingOver(round);
+                if (outputCache != null) {
+                    outputCache.evict(log);
+                    log.debug("{} of {}", outputCache, name());
+                }
+            }
+
+            log.debug("end round {} of {} ({}; {})", roundNumber, name(), round.cache(), round.files());
+            if (instrumentation != null) {
+                instrumentation.round(roundNumber, stopwatch.stop());
+                if (round.isLast())
+                    report(instrumentation);
+            }
 
             return claimed;
         } catch (Exception e) {
@@ -41,12 +74,69 @@ public abstract class ExtendedAbstractProcessor extends AbstractProcessor {
         }
     }
 
+    private boolean process(Round round, Instrumentation instrumentation) throws Exception {
+        if (instrumentation == null)
+            return process(round);
+        Stopwatch stopwatch = instrumentation.start();
+        try {
+            return process(round);
+        } finally {
+            instrumentation.processCall(round.number(), stopwatch.stop());
+        }
+    }
+
+    private Instrumentation instrumentation() {
+        if (!instrumentationResolved) {
+            instrumentation = Instrumentation.of(processingEnv);
+            instrumentationResolved = true;
+        }
+        return instrumentation;
+    }
+
+    /** Written directly to the filer, so it's neither measured nor checked for originating elements */
+    private void report(Instrumentation instrumentation) throws IOException {
+        String processor = getClass().getName();
+        note(instrumentation.summary(processor));
+        if (instrumentation.isJson())
+            try (Writer writer = processingEnv.getFiler()
+                    .createResource(CLASS_OUTPUT, "", "exap-instrumentation/" + processor + ".json").openWriter()) {
+                writer.write(instrumentation.json(processor));
+            }
+    }
+
+    private OutputCache outputCache() {
+        if (!outputCacheResolved) {
+            outputCache = OutputCache.of(processingEnv, getClass());
+            outputCacheResolved = true;
+        }
+        return outputCache;
+    }
+
     private String name() {
         return getClass().getSimpleName();
     }
 
     public abstract boolean process(Round round) throws Exception;
 
+    /**
+     * Called after the {@link Round#isLast() last} round, even if {@link SupportedAnnotationClasses#skipEmptyRounds()
+     * empty rounds are skipped}. The default does nothing.
+     */
+    public void processingOver(Round round) throws Exception {}
+
+    private Incremental incremental() {
+        SupportedAnnotationClasses supported = this.getClass().getAnnotation(SupportedAnnotationClasses.class);
+        return (supported == null) ? Incremental.NONE : supported.incremental();
+    }
+
+    private boolean skipEmptyRounds() {
+        if (skipEmptyRounds == null) {
+            SupportedAnnotationClasses supported = this.getClass().getAnnotation(SupportedAnnotationClasses.class);
+            skipEmptyRounds = supported != null && supported.skipEmptyRounds();
+        }
+        return skipEmptyRounds;
+    }
+
     @Override
     public Set<String> getSupportedAnnotationTypes() {
         SupportedAnnotationClasses supported = this.getClass().getAnnotation(SupportedAnnotationClasses.class);
@@ -55,11 +145,21 @@ public abstract class ExtendedAbstractProcessor extends AbstractProcessor {
 
         Set<String> result = new HashSet<>();
         for (Class<? extends Annotation> annotation : supported.value()) {
-            result.add(annotation.getName());
+            result.add((annotation.getCanonicalName() == null) ? annotation.getName() : annotation.getCanonicalName());
         }
         return result;
     }
 
+    /** The options declared with {@link SupportedOptions} plus the options of ExAP itself */
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> result = new HashSet<>(super.getSupportedOptions());
+        result.add(GeneratedFiles.SKIP_UNCHANGED);
+        result.add(OutputCache.CACHE_DIR);
+        result.add(Instrumentation.INSTRUMENT);
+        return result;
+    }
+
     private Messager messager() {
         return processingEnv.getMessager();
     }
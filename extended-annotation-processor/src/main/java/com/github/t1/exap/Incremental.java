@@ -0,0 +1,25 @@
+package com.github.t1.exap;
+
+/**
+ * The categories of incremental annotation processors in Gradle, declared with
+ * {@link SupportedAnnotationClasses#incremental()}; see
+ * https://docs.gradle.org/current/userguide/java_plugin.html#sec:incremental_annotation_processing
+ */
+public enum Incremental {
+    /** Not incremental, i.e. Gradle recompiles everything when a source changes */
+    NONE,
+
+    /**
+     * Every generated file depends on exactly one originating element, e.g. the annotated type, and nothing else that
+     * is not reachable from there; ExAP fails when a file is created with no or several originating elements.
+     */
+    ISOLATING,
+
+    /** The generated files aggregate several originating elements, e.g. into one registry */
+    AGGREGATING;
+
+    /** The name in <code>META-INF/gradle/incremental.annotation.processors</code> */
+    public String gradleName() {
+        return name().toLowerCase();
+    }
+}
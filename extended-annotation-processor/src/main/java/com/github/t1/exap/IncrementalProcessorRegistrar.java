@@ -0,0 +1,64 @@
+package com.github.t1.exap;
+
+import java.io.*;
+import java.util.*;
+
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+
+import com.github.t1.exap.reflection.*;
+
+/**
+ * Registers the processors that declare to be {@link SupportedAnnotationClasses#incremental() incremental} in
+ * <code>META-INF/gradle/incremental.annotation.processors</code>, so Gradle can compile the modules using them
+ * incrementally. Add it as an annotation processor when compiling your processors; it finds all non-abstract
+ * subclasses of {@link ExtendedAbstractProcessor} with the annotation, also if it's inherited.
+ */
+@SupportedAnnotationTypes("*")
+public class IncrementalProcessorRegistrar extends ExtendedAbstractProcessor {
+    public static final String REGISTRY = "META-INF/gradle/incremental.annotation.processors";
+
+    private final Map<String, Incremental> processors = new TreeMap<>();
+    private final List<Type> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Round round) {
+        for (Type type : round.subtypesOf(ExtendedAbstractProcessor.class)) {
+            if (type.isAbstract())
+                continue;
+            List<AnnotationWrapper> supported = type.findAnnotationWrappers(SupportedAnnotationClasses.class);
+            if (supported.isEmpty())
+                continue;
+            Incremental incremental = Incremental.valueOf(supported.get(0).getEnumProperty("incremental"));
+            if (incremental == Incremental.NONE)
+                continue;
+            processors.put(binaryName(type), incremental);
+            originatingElements.add(type);
+        }
+        return false;
+    }
+
+    /** Nested processors have to be registered with their binary name */
+    private static String binaryName(Type type) {
+        String pkg = type.getPackage().getName();
+        String relativeName = type.getRelativeName().replace('.', '$');
+        return (pkg == null || pkg.isEmpty()) ? relativeName : pkg + "." + relativeName;
+    }
+
+    @Override
+    public void processingOver(Round round) throws IOException {
+        if (processors.isEmpty())
+            return;
+        log.debug("register incremental processors {}", processors);
+        Resource resource = round.createResource("", REGISTRY, originatingElements.toArray(new Elemental[0]));
+        try (Writer writer = resource.openWriter()) {
+            for (Map.Entry<String, Incremental> entry : processors.entrySet())
+                writer.write(entry.getKey() + "," + entry.getValue().gradleName() + "\n");
+        }
+    }
+}
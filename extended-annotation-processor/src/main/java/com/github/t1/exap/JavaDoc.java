@@ -19,7 +19,8 @@ import java.util.function.Function;
 public @interface JavaDoc {
     /**
      * The first sentence of the JavaDoc is often treated as the summary of the rest of the text, which works
-     * astonishingly well. This is this first sentence, without the period.
+     * astonishingly well. This is this first sentence, without the period. For the other parts of the JavaDoc, see
+     * {@link JavaDocModel}.
      */
     public static final Function<JavaDoc, String> SUMMARY = JavaDocHelper.JAVADOC_SUMMARY;
 
@@ -1,17 +1,24 @@
 package com.github.t1.exap;
 
+import static java.util.Collections.*;
+
+import java.util.*;
 import java.util.function.Function;
 
 class JavaDocHelper {
+    /** Weak, so the models don't outlive their annotations, and synchronized, as snapshots are used by many threads */
+    private static final Map<JavaDoc, JavaDocModel> MODELS = synchronizedMap(new WeakHashMap<>());
+
+    /** Parsed only once per annotation */
+    static JavaDocModel model(JavaDoc javaDoc) {
+        return MODELS.computeIfAbsent(javaDoc, d -> new JavaDocModel(d.value()));
+    }
+
     /**
      * This can't be defined in the JavaDoc annotation directly, or accessing the class throws a
      * <code>java.lang.IllegalArgumentException: private static java.lang.String
      * com.github.t1.exap.JavaDoc.lambda$static$3(com.github.t1.exap.JavaDoc) has params at
      * sun.reflect.annotation.AnnotationType.<init>(AnnotationType.java:122)</code>
      */
-    static final Function<JavaDoc, String> JAVADOC_SUMMARY = (d) -> {
-        String value = d.value();
-        int firstDot = value.indexOf('.');
-        return (firstDot < 0) ? value : value.substring(0, firstDot);
-    };
+    static final Function<JavaDoc, String> JAVADOC_SUMMARY = (d) -> model(d).getSummary();
 }
@@ -0,0 +1,200 @@
+package com.github.t1.exap;
+
+import static java.util.Collections.*;
+
+import java.util.*;
+
+/**
+ * The structure of a JavaDoc text: the main description with its summary sentence and inline tags, and the block
+ * tags like <code>@param</code>, <code>@return</code>, <code>@throws</code>, or any custom tags. The text is parsed
+ * only when one of these parts is requested, and only once.
+ *
+ * @see com.github.t1.exap.reflection.Elemental#getJavaDoc()
+ */
+public class JavaDocModel {
+    /** A block tag like <code>@param name text</code> or an inline tag like <code>{@code text}</code> */
+    public static class Tag {
+        private final String name;
+        private final String argument;
+        private final String text;
+
+        public Tag(String name, String argument, String text) {
+            this.name = name;
+            this.argument = argument;
+            this.text = text;
+        }
+
+        /** Without the <code>@</code> */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The parameter name of a <code>@param</code> tag or the exception of a <code>@throws</code> or
+         * <code>@exception</code> tag; <code>null</code> for all other tags.
+         */
+        public String getArgument() {
+            return argument;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        @Override
+        public String toString() {
+            return "@" + name + ((argument == null) ? "" : " " + argument) + (text.isEmpty() ? "" : " " + text);
+        }
+    }
+
+    private static final List<String> TAGS_WITH_ARGUMENT = Arrays.asList("param", "throws", "exception");
+
+    private final String text;
+
+    private String body;
+    private String summary;
+    private List<Tag> blockTags;
+    private List<Tag> inlineTags;
+
+    public JavaDocModel(String text) {
+        this.text = text.trim();
+    }
+
+    /** The complete JavaDoc text */
+    public String getText() {
+        return text;
+    }
+
+    /** The main description, i.e. the text before the first block tag */
+    public String getBody() {
+        if (body == null)
+            parseBlocks();
+        return body;
+    }
+
+    /**
+     * The first sentence of the {@link #getBody() body}, without the period. A sentence ends at the first period that
+     * is followed by white space or the end of the body, so e.g. version numbers don't end it.
+     */
+    public String getSummary() {
+        if (summary == null) {
+            String body = getBody();
+            int end = 0;
+            while ((end = body.indexOf('.', end)) >= 0) {
+                if (end + 1 == body.length() || Character.isWhitespace(body.charAt(end + 1)))
+                    break;
+                ++end;
+            }
+            summary = (end < 0) ? body : body.substring(0, end);
+        }
+        return summary;
+    }
+
+    /** All block tags, in the order they appear */
+    public List<Tag> getBlockTags() {
+        if (blockTags == null)
+            parseBlocks();
+        return blockTags;
+    }
+
+    /** The block tags with that name, without the <code>@</code> */
+    public List<Tag> getBlockTags(String name) {
+        List<Tag> result = new ArrayList<>();
+        for (Tag tag : getBlockTags())
+            if (tag.getName().equals(name))
+                result.add(tag);
+        return result;
+    }
+
+    /** The text of the <code>@param</code> tag for that parameter; or <code>null</code>, if there is none */
+    public String getParam(String name) {
+        return text("param", name);
+    }
+
+    /** The text of the <code>@return</code> tag; or <code>null</code>, if there is none */
+    public String getReturn() {
+        return text("return", null);
+    }
+
+    /**
+     * The text of the <code>@throws</code> or <code>@exception</code> tag for that exception, as written in the
+     * JavaDoc, i.e. generally the simple name; or <code>null</code>, if there is none
+     */
+    public String getThrows(String exception) {
+        String result = text("throws", exception);
+        return (result == null) ? text("exception", exception) : result;
+    }
+
+    private String text(String name, String argument) {
+        for (Tag tag : getBlockTags())
+            if (tag.getName().equals(name) && Objects.equals(tag.getArgument(), argument))
+                return tag.getText();
+        return null;
+    }
+
+    /** The inline tags like <code>{@link ...}</code> in the {@link #getBody() body} */
+    public List<Tag> getInlineTags() {
+        if (inlineTags == null)
+            inlineTags = unmodifiableList(parseInlineTags(getBody()));
+        return inlineTags;
+    }
+
+    private void parseBlocks() {
+        StringBuilder description = new StringBuilder();
+        List<StringBuilder> tags = new ArrayList<>();
+        StringBuilder current = description;
+        for (String line : text.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("@")) {
+                current = new StringBuilder();
+                tags.add(current);
+            } else if (current.length() > 0) {
+                current.append('\n');
+            }
+            current.append(trimmed);
+        }
+        this.body = description.toString().trim();
+        List<Tag> list = new ArrayList<>();
+        for (StringBuilder tag : tags)
+            list.add(parseBlockTag(tag.toString()));
+        this.blockTags = unmodifiableList(list);
+    }
+
+    private static Tag parseBlockTag(String tag) {
+        String[] split = tag.substring(1).split("\\s+", 2);
+        String name = split[0];
+        String text = (split.length < 2) ? "" : split[1].trim();
+        String argument = null;
+        if (TAGS_WITH_ARGUMENT.contains(name)) {
+            String[] argumentSplit = text.split("\\s+", 2);
+            argument = argumentSplit[0];
+            text = (argumentSplit.length < 2) ? "" : argumentSplit[1].trim();
+        }
+        return new Tag(name, argument, text);
+    }
+
+    private static List<Tag> parseInlineTags(String text) {
+        List<Tag> result = new ArrayList<>();
+        int start = 0;
+        while ((start = text.indexOf("{@", start)) >= 0) {
+            int end = start + 2;
+            int depth = 1;
+            for (; end < text.length() && depth > 0; end++)
+                if (text.charAt(end) == '{')
+                    ++depth;
+                else if (text.charAt(end) == '}')
+                    --depth;
+            if (depth > 0)
+                break; // unterminated
+            String[] split = text.substring(start + 2, end - 1).split("\\s+", 2);
+            result.add(new Tag(split[0], null, (split.length < 2) ? "" : split[1].trim()));
+            start = end;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
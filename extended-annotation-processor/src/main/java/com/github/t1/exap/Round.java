@@ -2,18 +2,17 @@ package com.github.t1.exap;
 
 import static java.util.Arrays.*;
 import static javax.lang.model.element.ElementKind.*;
-import static javax.tools.StandardLocation.*;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import javax.annotation.processing.*;
 import javax.lang.model.element.*;
 
 import org.slf4j.Logger;
 
+import com.github.t1.exap.generator.GenerationBatch;
 import com.github.t1.exap.reflection.*;
 import com.github.t1.exap.reflection.Package;
 
@@ -24,30 +23,149 @@ public class Round {
     private final ProcessingEnvironment processingEnv;
     private final RoundEnvironment roundEnv;
     private final int roundNumber;
+    private final ModelCache cache;
+    private final OutputCache outputCache;
+    private final Incremental incremental;
+    private final Instrumentation instrumentation;
+
+    private AnnotationIndex annotationIndex;
+    private SubtypeIndex subtypeIndex;
+    private GeneratedFiles files;
 
     public Round(Logger log, ProcessingEnvironment processingEnv, RoundEnvironment roundEnv, int roundNumber) {
+        this(log, processingEnv, roundEnv, roundNumber, new AnnotationTypeCache());
+    }
+
+    /** @param annotationTypes shared by all rounds of a compilation */
+    public Round(Logger log, ProcessingEnvironment processingEnv, RoundEnvironment roundEnv, int roundNumber,
+            AnnotationTypeCache annotationTypes) {
+        this(log, processingEnv, roundEnv, roundNumber, annotationTypes, null, Incremental.NONE, null);
+    }
+
+    /**
+     * @param annotationTypes shared by all rounds of a compilation
+     * @param outputCache shared by all rounds of a compilation; <code>null</code> if it's not enabled
+     * @param incremental the category of the processor, checked when files are created
+     * @param instrumentation shared by all rounds of a compilation; <code>null</code> if it's not enabled
+     */
+    @SuppressWarnings("deprecation")
+    public Round(Logger log, ProcessingEnvironment processingEnv, RoundEnvironment roundEnv, int roundNumber,
+            AnnotationTypeCache annotationTypes, OutputCache outputCache, Incremental incremental,
+            Instrumentation instrumentation) {
         this.log = log;
         this.processingEnv = processingEnv;
         this.roundEnv = roundEnv;
         this.roundNumber = roundNumber;
+        this.cache = ModelCache.of(this, annotationTypes);
+        this.outputCache = outputCache;
+        this.incremental = incremental;
+        this.instrumentation = instrumentation;
     }
 
     public List<Type> typesAnnotatedWith(Class<? extends Annotation> type) {
         List<Type> result = new ArrayList<>();
-        for (Element element : roundEnv.getElementsAnnotatedWith(type))
+        for (Element element : annotationIndex().get(type))
             if (TYPE_KINDS.contains(element.getKind()))
                 result.add(Type.of(element.asType(), this));
         return result;
     }
 
+    /**
+     * The types in this round annotated with that annotation, either directly or on one of their annotations, i.e. a
+     * stereotype, or on one of their annotations, etc.
+     */
+    public List<Type> typesMetaAnnotatedWith(Class<? extends Annotation> type) {
+        Set<Type> result = new LinkedHashSet<>();
+        for (String annotationTypeName : annotationIndex().annotationTypeNames())
+            if (annotationTypeName.equals(type.getCanonicalName()) || isStereotype(annotationTypeName, type))
+                for (Element element : annotationIndex().get(annotationTypeName))
+                    if (TYPE_KINDS.contains(element.getKind()))
+                        result.add(Type.of(element.asType(), this));
+        return new ArrayList<>(result);
+    }
+
+    private boolean isStereotype(String annotationTypeName, Class<? extends Annotation> metaAnnotation) {
+        TypeElement annotationType = processingEnv.getElementUtils().getTypeElement(annotationTypeName);
+        return annotationType != null && Type.of(annotationType.asType(), this).isMetaAnnotated(metaAnnotation);
+    }
+
     public List<Package> packagesAnnotatedWith(Class<? extends Annotation> type) {
         List<Package> result = new ArrayList<>();
-        for (Element element : roundEnv.getElementsAnnotatedWith(type))
+        for (Element element : annotationIndex().get(type))
             if (PACKAGE == element.getKind())
                 result.add(new Package((PackageElement) element, this));
         return result;
     }
 
+    /** The methods in this round annotated with that annotation; the types they are in are not scanned */
+    public List<Method> methodsAnnotatedWith(Class<? extends Annotation> type) {
+        List<Method> result = new ArrayList<>();
+        for (Element element : annotationIndex().get(type))
+            if (METHOD == element.getKind())
+                result.add(Method.of((ExecutableElement) element, this));
+        return result;
+    }
+
+    /** The fields in this round annotated with that annotation; the types they are in are not scanned */
+    public List<Field> fieldsAnnotatedWith(Class<? extends Annotation> type) {
+        List<Field> result = new ArrayList<>();
+        for (Element element : annotationIndex().get(type))
+            if (FIELD == element.getKind())
+                result.add(Field.of((VariableElement) element, this));
+        return result;
+    }
+
+    /** The method parameters in this round annotated with that annotation; constructor parameters are not included */
+    public List<Parameter> parametersAnnotatedWith(Class<? extends Annotation> type) {
+        List<Parameter> result = new ArrayList<>();
+        for (Element element : annotationIndex().get(type))
+            if (PARAMETER == element.getKind() && METHOD == element.getEnclosingElement().getKind())
+                result.add(Parameter.of((VariableElement) element, this));
+        return result;
+    }
+
+    private AnnotationIndex annotationIndex() {
+        if (annotationIndex == null)
+            annotationIndex = AnnotationIndex.of(roundEnv.getRootElements(), processingEnv.getElementUtils());
+        return annotationIndex;
+    }
+
+    /** All types in this round that directly or indirectly extend or implement that class or interface */
+    public List<Type> subtypesOf(Class<?> type) {
+        return subtypeIndex().all(nameOf(type));
+    }
+
+    /** All types in this round that directly or indirectly extend or implement that class or interface */
+    public List<Type> subtypesOf(Type type) {
+        return subtypeIndex().all(nameOf(type));
+    }
+
+    /** All types in this round that directly extend or implement that class or interface */
+    public List<Type> directSubtypesOf(Class<?> type) {
+        return subtypeIndex().direct(nameOf(type));
+    }
+
+    /** All types in this round that directly extend or implement that class or interface */
+    public List<Type> directSubtypesOf(Type type) {
+        return subtypeIndex().direct(nameOf(type));
+    }
+
+    private static String nameOf(Class<?> type) {
+        return (type.getCanonicalName() == null) ? type.getName() : type.getCanonicalName();
+    }
+
+    private static String nameOf(Type type) {
+        String name = type.getFullName();
+        int i = name.indexOf('<');
+        return (i < 0) ? name : name.substring(0, i);
+    }
+
+    private SubtypeIndex subtypeIndex() {
+        if (subtypeIndex == null)
+            subtypeIndex = SubtypeIndex.of(roundEnv.getRootElements(), this);
+        return subtypeIndex;
+    }
+
     public Logger log() {
         return log;
     }
@@ -58,6 +176,18 @@ public class Round {
         return processingEnv;
     }
 
+    /** The wrappers created within this round */
+    public ModelCache cache() {
+        return cache;
+    }
+
+    /** The files generated within this round */
+    public GeneratedFiles files() {
+        if (files == null)
+            files = new GeneratedFiles(processingEnv, incremental, instrumentation);
+        return files;
+    }
+
     public int number() {
         return roundNumber;
     }
@@ -83,7 +213,30 @@ public class Round {
         return getPackage(type.getPackage().getName());
     }
 
+    /** Render many types in parallel; they are written when the batch is closed */
+    public GenerationBatch openGenerationBatch() {
+        return new GenerationBatch(log);
+    }
+
+    /**
+     * Run the generation of the files for that type; or, if the {@link OutputCache} is enabled and the type didn't
+     * change since it was generated the last time, replay the files from the cache. A {@link GenerationBatch} has to
+     * be closed within the generation, or its files are not cached.
+     */
+    public void cached(Type type, OutputCache.Generation generation) throws Exception {
+        if (outputCache == null)
+            generation.generate();
+        else
+            outputCache.generate(this, type, generation);
+    }
+
     public Resource createResource(String pkg, String relativeName) throws IOException {
-        return new Resource(processingEnv.getFiler().createResource(CLASS_OUTPUT, pkg, relativeName));
+        return files().createResource(pkg, relativeName);
+    }
+
+    /** @param originatingElements the elements the resource is generated from, for incremental builds */
+    public Resource createResource(String pkg, String relativeName, Elemental... originatingElements)
+            throws IOException {
+        return files().createResource(pkg, relativeName, originatingElements);
     }
 }
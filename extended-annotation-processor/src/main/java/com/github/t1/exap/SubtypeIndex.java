@@ -0,0 +1,69 @@
+package com.github.t1.exap;
+
+import static java.util.Collections.*;
+import static javax.lang.model.type.TypeKind.*;
+
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+
+import com.github.t1.exap.reflection.Type;
+
+/**
+ * The reverse of the type hierarchy of all types in the root elements of a round (incl. nested types): from the
+ * qualified name of a class or interface to the types that directly or indirectly extend or implement it. It's
+ * built in a single pass, so querying for subtypes doesn't have to check every type for every query.
+ */
+class SubtypeIndex {
+    static SubtypeIndex of(Iterable<? extends Element> rootElements, Round round) {
+        SubtypeIndex index = new SubtypeIndex(round);
+        for (Element element : rootElements)
+            if (element instanceof TypeElement)
+                index.add((TypeElement) element);
+        return index;
+    }
+
+    private final Round round;
+    private final Map<String, List<Type>> direct = new HashMap<>();
+    private final Map<String, List<Type>> all = new HashMap<>();
+
+    private SubtypeIndex(Round round) {
+        this.round = round;
+    }
+
+    private void add(TypeElement element) {
+        Type type = Type.of(element.asType(), round);
+        addDirect(element.getSuperclass(), type);
+        for (TypeMirror anInterface : element.getInterfaces())
+            addDirect(anInterface, type);
+        String name = element.getQualifiedName().toString();
+        for (String supertypeName : type.getSupertypeNames())
+            if (!supertypeName.equals(name))
+                all.computeIfAbsent(supertypeName, n -> new ArrayList<>()).add(type);
+
+        for (Element enclosed : element.getEnclosedElements())
+            if (enclosed instanceof TypeElement)
+                add((TypeElement) enclosed);
+    }
+
+    private void addDirect(TypeMirror supertype, Type type) {
+        if (supertype.getKind() == DECLARED) {
+            String name = ((TypeElement) ((DeclaredType) supertype).asElement()).getQualifiedName().toString();
+            direct.computeIfAbsent(name, n -> new ArrayList<>()).add(type);
+        }
+    }
+
+    public List<Type> direct(String supertypeName) {
+        return get(direct, supertypeName);
+    }
+
+    public List<Type> all(String supertypeName) {
+        return get(all, supertypeName);
+    }
+
+    private List<Type> get(Map<String, List<Type>> map, String supertypeName) {
+        List<Type> list = map.get(supertypeName);
+        return (list == null) ? emptyList() : unmodifiableList(list);
+    }
+}
@@ -7,6 +7,10 @@ import java.lang.annotation.*;
 
 import javax.annotation.processing.SupportedAnnotationTypes;
 
+import com.github.t1.exap.generator.TypeGenerator;
+import com.github.t1.exap.reflection.*;
+import com.github.t1.exap.reflection.Package;
+
 /**
  * Similar to {@link SupportedAnnotationTypes}, but with class names instead of String constants... which is better for
  * refactoring, etc.
@@ -17,4 +21,18 @@ import javax.annotation.processing.SupportedAnnotationTypes;
 @Retention(RUNTIME)
 public @interface SupportedAnnotationClasses {
     Class<? extends Annotation>[]value();
+
+    /**
+     * Don't call {@link ExtendedAbstractProcessor#process(Round)} for rounds that contain none of the supported
+     * annotations, as javac does e.g. for the final round and for rounds that only contain generated code. Work that
+     * has to be done at the end of the processing can go into {@link ExtendedAbstractProcessor#processingOver(Round)}.
+     */
+    boolean skipEmptyRounds() default false;
+
+    /**
+     * Declares the processor as an incremental annotation processor for Gradle, registered by the
+     * {@link IncrementalProcessorRegistrar}. The files have to be created with their originating elements, e.g.
+     * {@link Package#createSource(String, Elemental...)} or {@link TypeGenerator#addOriginatingElement(Elemental)}.
+     */
+    Incremental incremental() default Incremental.NONE;
 }
@@ -1,20 +1,15 @@
 package com.github.t1.exap.generator;
 
 import java.util.*;
-import java.util.Map.Entry;
 
 import com.github.t1.exap.reflection.Type;
 
 public class AnnotationGenerator {
-    private final TypeGenerator annotated;
-    private final Type annotation;
+    private final String name;
     private Map<String, Object> properties;
 
     public AnnotationGenerator(TypeGenerator annotated, Type annotation) {
-        this.annotated = annotated;
-        this.annotation = annotation;
-
-        this.annotated.addImport(annotation);
+        this.name = annotated.reference(annotation);
     }
 
     public void set(String property, String value) {
@@ -27,17 +22,18 @@ public class AnnotationGenerator {
         properties.put(property, value);
     }
 
-    @Override
-    public String toString() {
-        StringBuilder out = new StringBuilder();
-        out.append("@").append(annotation.getSimpleName());
+    public void print(CodeWriter out) {
+        out.print('@').print(name);
         if (properties != null && !properties.isEmpty()) {
-            out.append('(');
-            for (Entry<String, Object> entry : properties.entrySet()) {
-                out.append('"').append(entry.getValue()).append('"');
-            }
-            out.append(')');
+            out.print('(');
+            for (Object value : properties.values())
+                out.print('"').print(value.toString()).print('"');
+            out.print(')');
         }
-        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return CodeWriter.toString(this::print);
     }
 }
@@ -0,0 +1,159 @@
+package com.github.t1.exap.generator;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Writes source code to a {@link Writer}, indenting every line by the current nesting level. The generators print
+ * directly into this writer, so no intermediate Strings are built; and the characters are collected in one buffer
+ * that's written through whenever it's full, instead of passing every little piece to the target writer. The
+ * buffer starts small and grows with the output, so a short <code>toString</code> doesn't allocate the full buffer.
+ * <p>
+ * The indentation is inserted before the first character of a line, so empty lines stay empty. Text with embedded
+ * line breaks, e.g. a method body, is written verbatim, i.e. only its first line is indented.
+ */
+public class CodeWriter implements Flushable {
+    private static final int INITIAL_BUFFER_SIZE = 128;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String INDENTATION = "    ";
+
+    /** Print to a String, e.g. for <code>toString</code> */
+    static String toString(Consumer<CodeWriter> printer) {
+        StringWriter string = new StringWriter();
+        CodeWriter out = new CodeWriter(string);
+        printer.accept(out);
+        out.flush();
+        return string.toString();
+    }
+
+    /**
+     * For the deprecated generator methods that print to a {@link PrintWriter}, indented by one level of that
+     * indentation string.
+     */
+    static void print(PrintWriter out, String indentation, Consumer<CodeWriter> printer) {
+        CodeWriter code = new CodeWriter(out, indentation).indent();
+        printer.accept(code);
+        code.flush();
+    }
+
+    private final Writer out;
+    private final String indentation;
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+    private int length = 0;
+    private int level = 0;
+    private boolean atLineStart = true;
+
+    public CodeWriter(Writer out) {
+        this(out, INDENTATION);
+    }
+
+    /** For the deprecated generator methods that take an indentation string */
+    CodeWriter(Writer out, String indentation) {
+        this.out = out;
+        this.indentation = indentation;
+    }
+
+    /** Indent the following lines by one more level */
+    public CodeWriter indent() {
+        ++level;
+        return this;
+    }
+
+    /** Indent the following lines by one level less */
+    public CodeWriter outdent() {
+        if (level == 0)
+            throw new IllegalStateException("can't outdent below level 0");
+        --level;
+        return this;
+    }
+
+    public CodeWriter print(char c) {
+        if (c != '\n')
+            indentAtLineStart();
+        write(c);
+        atLineStart = (c == '\n');
+        return this;
+    }
+
+    public CodeWriter print(CharSequence text) {
+        return print(text, 0, text.length());
+    }
+
+    /** Print the characters from <code>start</code> (inclusive) to <code>end</code> (exclusive) */
+    public CodeWriter print(CharSequence text, int start, int end) {
+        if (start == end)
+            return this;
+        if (text.charAt(start) != '\n')
+            indentAtLineStart();
+        append(text, start, end);
+        atLineStart = (text.charAt(end - 1) == '\n');
+        return this;
+    }
+
+    private void indentAtLineStart() {
+        if (atLineStart)
+            for (int i = 0; i < level; i++)
+                append(indentation, 0, indentation.length());
+    }
+
+    public CodeWriter println(CharSequence text) {
+        return print(text).println();
+    }
+
+    public CodeWriter println() {
+        return print('\n');
+    }
+
+    private void append(CharSequence text, int start, int end) {
+        if (text instanceof String) {
+            String string = (String) text;
+            int offset = start;
+            while (offset < end) {
+                if (length == buffer.length)
+                    makeRoom();
+                int count = Math.min(buffer.length - length, end - offset);
+                string.getChars(offset, offset + count, buffer, length);
+                length += count;
+                offset += count;
+            }
+        } else {
+            for (int i = start; i < end; i++)
+                write(text.charAt(i));
+        }
+    }
+
+    private void write(char c) {
+        if (length == buffer.length)
+            makeRoom();
+        buffer[length++] = c;
+    }
+
+    /** Grow the full buffer or, if it already has the maximum size, write it through */
+    private void makeRoom() {
+        if (buffer.length < BUFFER_SIZE)
+            buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, BUFFER_SIZE));
+        else
+            writeBuffer();
+    }
+
+    private void writeBuffer() {
+        try {
+            out.write(buffer, 0, length);
+            length = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Write the buffer and flush the target writer */
+    @Override
+    public void flush() {
+        writeBuffer();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -25,12 +25,20 @@ public class ConstructorGenerator {
         return this;
     }
 
+    /** @deprecated the {@link TypeGenerator} prints this into a {@link CodeWriter} */
+    @Deprecated
     public void print(PrintWriter out) {
-        out.print("    public " + container.getTypeName() + "(");
+        CodeWriter.print(out, "    ", this::print);
+    }
+
+    public void print(CodeWriter out) {
+        out.print("public ").print(container.getTypeName()).print('(');
         ParameterGenerator.print(parameters, out);
         out.println(") {");
-        out.println("        " + body);
-        out.println("    }");
+        if (body == null)
+            throw new IllegalStateException("no body for constructor of " + container.getTypeName());
+        out.indent().println(body).outdent();
+        out.println("}");
         out.println();
     }
 }
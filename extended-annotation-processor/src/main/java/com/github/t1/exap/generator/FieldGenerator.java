@@ -36,13 +36,17 @@ public class FieldGenerator {
     }
 
 
+    /** @deprecated the {@link TypeGenerator} prints this into a {@link CodeWriter} */
+    @Deprecated
     public void print(PrintWriter out) {
-        out.print("    private ");
+        CodeWriter.print(out, "    ", this::print);
+    }
+
+    public void print(CodeWriter out) {
+        out.print("private ");
         if (isFinal)
             out.print("final ");
-        out.print(type);
-        out.print(" ");
-        out.print(name);
-        out.println(";");
+        type.print(out);
+        out.print(' ').print(name).println(";");
     }
 }
@@ -0,0 +1,73 @@
+package com.github.t1.exap.generator;
+
+import static java.util.stream.Collectors.*;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.Round;
+import com.github.t1.exap.reflection.Package;
+
+/**
+ * Collects many {@link TypeGenerator}s and, when closed, renders their sources in parallel, and then writes them in
+ * the order the generators were opened. The generators only hold detached data, i.e. Strings, so rendering doesn't
+ * touch the compiler model; writing goes through the {@link javax.annotation.processing.Filer}, so it's done on the
+ * calling thread, i.e. the processor thread.
+ * <p>
+ * Closing the generators themselves is not required and does nothing.
+ *
+ * @see Round#openGenerationBatch()
+ * @see Package#openTypeGenerator(String, GenerationBatch)
+ */
+public class GenerationBatch implements AutoCloseable {
+    private final Logger log;
+    private final List<TypeGenerator> generators = new ArrayList<>();
+
+    public GenerationBatch(Logger log) {
+        this.log = log;
+    }
+
+    public TypeGenerator openTypeGenerator(Package pkg, String typeName) {
+        TypeGenerator generator = new TypeGenerator(log, pkg, typeName, true);
+        generators.add(generator);
+        return generator;
+    }
+
+    public int size() {
+        return generators.size();
+    }
+
+    /**
+     * Render all types and write them. If a generator fails, nothing is written, and the exception of the first
+     * failing generator is rethrown as it is.
+     */
+    @Override
+    public void close() {
+        log.debug("render {} types", generators.size());
+        try {
+            List<Rendered> rendered = generators.parallelStream().map(Rendered::new).collect(toList());
+            for (Rendered source : rendered)
+                if (source.failure != null)
+                    throw source.failure;
+            for (int i = 0; i < generators.size(); i++)
+                generators.get(i).write(rendered.get(i).source);
+        } finally {
+            generators.clear();
+        }
+    }
+
+    /** The source or the exception, so it's not wrapped by the fork-join pool and the first one is rethrown */
+    private static class Rendered {
+        private String source;
+        private RuntimeException failure;
+
+        private Rendered(TypeGenerator generator) {
+            try {
+                this.source = CodeWriter.toString(generator::print);
+            } catch (RuntimeException e) {
+                this.failure = e;
+            }
+        }
+    }
+}
@@ -1,64 +1,108 @@
 package com.github.t1.exap.generator;
 
+import static java.util.Arrays.*;
+
 import java.io.PrintWriter;
 import java.util.*;
 
 import com.github.t1.exap.reflection.Type;
 
+/**
+ * Collects the imports of a generated type and decides how every type is referenced: by its simple name, if that's
+ * unique within the generated source; or fully qualified, if the simple name is already taken by a different type,
+ * e.g. the generated type itself or another type with the same simple name. Types from <code>java.lang</code> and
+ * from the package of the generated type need no import, but they still take their simple name.
+ * <p>
+ * The types are grouped by their containing package (or outer type) when they are added, so printing is a single
+ * pass over the groups: <code>java</code>, <code>javax</code>, <code>org</code>, <code>com</code>, and then all others,
+ * each sorted by name. Every type gets a single-type import: a <code>*</code> import also brings in the types the
+ * generated source doesn't reference, and they can make a simple name ambiguous, e.g. <code>java.awt.List</code>
+ * for <code>java.util.List</code>.
+ */
 public class ImportGenerator {
-    private final Set<Type> imports = new TreeSet<>(Comparator.comparing(c -> c.getFullName()));
+    private static final List<String> GROUPS = asList("java.", "javax.", "org.", "com.");
+    private static final String JAVA_LANG = "java.lang";
+
+    private final String packageName;
+    /** The simple name -> the qualified name of the type that may use it */
+    private final Map<String, String> owners = new HashMap<>();
+    /** The containing package (or outer type) -> the simple names imported from there */
+    private final Map<String, List<String>> containers = new HashMap<>();
+
+    public ImportGenerator(String packageName, String typeName) {
+        this.packageName = packageName;
+        owners.put(typeName, qualified(packageName, typeName));
+    }
 
-    public void add(Type type) {
-        if (requiresImport(type))
-            imports.add(type);
+    private static String qualified(String container, String simpleName) {
+        return container.isEmpty() ? simpleName : container + "." + simpleName;
     }
 
-    private boolean requiresImport(Type type) {
-        if (type.getPackage() == null || "java.lang".equals(type.getPackage().getName()))
-            return false;
-        return true;
+    /**
+     * Add the import for that type, if it's required, and return the name to reference the type: the simple name or,
+     * if the simple name is already taken by a different type, the fully qualified name. Type arguments are not
+     * included.
+     */
+    public String add(Type type) {
+        if (type.isArray())
+            return add(type.elementType()) + "[]";
+        String simpleName = type.getSimpleName();
+        String qualifiedName = qualifiedName(type);
+        int lastDot = qualifiedName.lastIndexOf('.');
+        if (lastDot < 0 || !qualifiedName.substring(lastDot + 1).equals(simpleName))
+            return simpleName; // primitive, root package, or type variable
+        String owner = owners.putIfAbsent(simpleName, qualifiedName);
+        if (owner == null) {
+            String container = qualifiedName.substring(0, lastDot);
+            if (!container.equals(JAVA_LANG) && !container.equals(packageName))
+                containers.computeIfAbsent(container, c -> new ArrayList<>()).add(simpleName);
+            return simpleName;
+        }
+        return owner.equals(qualifiedName) ? simpleName : qualifiedName;
+    }
+
+    /** The canonical name without type arguments */
+    private static String qualifiedName(Type type) {
+        String name = type.getFullName();
+        int typeArgs = name.indexOf('<');
+        if (typeArgs >= 0)
+            name = name.substring(0, typeArgs);
+        return name.replace('$', '.');
     }
 
+    /** @deprecated the {@link TypeGenerator} prints this into a {@link CodeWriter} */
+    @Deprecated
     public void print(PrintWriter out) {
-        printImportGroup(out, "java");
-        printImportGroup(out, "javax");
-        printImportGroup(out, "org");
-        printImportGroup(out, "com");
+        CodeWriter.print(out, "", this::print);
     }
 
-    private void printImportGroup(PrintWriter out, String groupName) {
-        List<String> actualImports = new ArrayList<>();
-        for (Type type : this.imports)
-            if (type.getFullName().startsWith(groupName + ".")) {
-                actualImports.add(type.getFullName().replace('$', '.'));
-            }
-        if (!actualImports.isEmpty()) {
-            while (!actualImports.isEmpty()) {
-                String actualImport = actualImports.remove(0);
-                if (removeOther(actualImports, stripLastItem(actualImport)))
-                    actualImport = stripLastItem(actualImport) + "*";
-                out.println("import " + actualImport + ";");
-            }
+    public void print(CodeWriter out) {
+        List<List<String>> groups = new ArrayList<>();
+        for (int i = 0; i <= GROUPS.size(); i++)
+            groups.add(new ArrayList<>());
+        for (String container : containers.keySet())
+            groups.get(group(container)).add(container);
+        for (List<String> group : groups) {
+            if (group.isEmpty())
+                continue;
+            Collections.sort(group);
+            for (String container : group)
+                printContainer(out, container);
             out.println();
         }
     }
 
-    private String stripLastItem(String typeName) {
-        int i = typeName.lastIndexOf('.');
-        if (i >= 0)
-            typeName = typeName.substring(0, i + 1);
-        return typeName;
+    private int group(String container) {
+        for (int i = 0; i < GROUPS.size(); i++)
+            if (container.startsWith(GROUPS.get(i)))
+                return i;
+        return GROUPS.size();
     }
 
-    private boolean removeOther(List<String> typeNames, String stripped) {
-        boolean removed = false;
-        for (Iterator<String> iter = typeNames.iterator(); iter.hasNext();) {
-            String typeName = iter.next();
-            if (stripLastItem(typeName).equals(stripped)) {
-                iter.remove();
-                removed = true;
-            }
-        }
-        return removed;
+    private void printContainer(CodeWriter out, String container) {
+        List<String> simpleNames = containers.get(container);
+        Collections.sort(simpleNames);
+        for (String simpleName : simpleNames)
+            out.print("import ").print(container).print('.').print(simpleName).println(";");
     }
 }
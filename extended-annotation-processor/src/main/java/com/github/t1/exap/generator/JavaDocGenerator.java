@@ -1,28 +1,48 @@
 package com.github.t1.exap.generator;
 
-import static java.util.Arrays.*;
-
 import java.io.PrintWriter;
-import java.util.List;
 
 public class JavaDocGenerator {
-    private String indent;
+    private String indent = "";
     private String javaDoc;
 
+    public JavaDocGenerator(String javaDoc) {
+        this.javaDoc = javaDoc;
+    }
+
+    /** @deprecated a {@link CodeWriter} knows the indentation */
+    @Deprecated
     public JavaDocGenerator(String indent, String javaDoc) {
         this.indent = indent;
         this.javaDoc = javaDoc;
     }
 
+    /** @deprecated print into a {@link CodeWriter}; this uses the indent passed to the deprecated constructor */
+    @Deprecated
     public void print(PrintWriter out) {
-        List<String> lines = asList(javaDoc.split("\n"));
-        if (lines.size() == 1) {
-            out.append(indent).append("/** ").append(javaDoc).println(" */");
+        CodeWriter.print(out, indent, this::print);
+    }
+
+    public void print(CodeWriter out) {
+        int lineBreak = javaDoc.indexOf('\n');
+        if (lineBreak < 0) {
+            out.print("/** ").print(javaDoc).println(" */");
         } else {
-            out.append(indent).append("/**\n");
-            lines.stream().forEach(line -> out.append(indent).append(" * ").append(line).append("\n"));
-            out.append(indent).append(" */\n");
+            out.println("/**");
+            int start = 0;
+            while (lineBreak >= 0) {
+                printLine(out, start, lineBreak);
+                start = lineBreak + 1;
+                lineBreak = javaDoc.indexOf('\n', start);
+            }
+            if (start < javaDoc.length())
+                printLine(out, start, javaDoc.length());
+            out.println(" */");
         }
     }
 
+    private void printLine(CodeWriter out, int start, int end) {
+        out.print(" * ").print(javaDoc, start, end).println();
+    }
+
 }
@@ -24,7 +24,7 @@ public class MethodGenerator {
 
     public void javaDoc(String javaDoc) {
         if (javaDoc != null && !javaDoc.isEmpty())
-            this.javaDoc = new JavaDocGenerator("    ", javaDoc);
+            this.javaDoc = new JavaDocGenerator(javaDoc);
     }
 
     public MethodGenerator setStatic() {
@@ -71,28 +71,39 @@ public class MethodGenerator {
         return isStatic;
     }
 
+    /** @deprecated the {@link TypeGenerator} prints this into a {@link CodeWriter} */
+    @Deprecated
     public void print(PrintWriter out) {
+        CodeWriter.print(out, "    ", this::print);
+    }
+
+    public void print(CodeWriter out) {
         if (javaDoc != null)
             javaDoc.print(out);
         printAnnotations(out);
-        out.print("    public ");
+        out.print("public ");
         if (isStatic)
             out.print("static ");
-        out.print(returnType + " " + name + "(");
+        if (returnType == null)
+            throw new IllegalStateException("no return type for method " + name);
+        returnType.print(out);
+        out.print(' ').print(name).print('(');
         ParameterGenerator.print(parameters, out);
-        out.print(")");
+        out.print(')');
         if (body == null)
-            out.append(";\n");
+            out.println(";");
         else
-            out.append(" {\n").append("        ").append(body).append("\n    }\n");
+            out.println(" {").indent().println(body).outdent().println("}");
         out.println();
     }
 
 
-    private void printAnnotations(PrintWriter out) {
+    private void printAnnotations(CodeWriter out) {
         if (annotations == null)
             return;
-        for (AnnotationGenerator annotation : annotations)
-            out.println("    " + annotation);
+        for (AnnotationGenerator annotation : annotations) {
+            annotation.print(out);
+            out.println();
+        }
     }
 }
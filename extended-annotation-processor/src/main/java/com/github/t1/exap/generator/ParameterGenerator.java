@@ -6,13 +6,19 @@ import java.util.*;
 import com.github.t1.exap.reflection.Type;
 
 public class ParameterGenerator {
+    public static void print(List<ParameterGenerator> parameters, CodeWriter out) {
+        if (parameters != null)
+            for (int i = 0; i < parameters.size(); i++) {
+                if (i > 0)
+                    out.print(", ");
+                parameters.get(i).print(out);
+            }
+    }
+
+    /** @deprecated the parameters are printed into a {@link CodeWriter} */
+    @Deprecated
     public static void print(List<ParameterGenerator> parameters, PrintWriter out) {
-        if (parameters != null) {
-            StringJoiner joiner = new StringJoiner(", ");
-            for (ParameterGenerator param : parameters)
-                joiner.add(param.toString());
-            out.print(joiner);
-        }
+        CodeWriter.print(out, "", code -> print(parameters, code));
     }
 
     private final TypeGenerator container;
@@ -46,14 +52,19 @@ public class ParameterGenerator {
         return annotationGenerator;
     }
 
+    public void print(CodeWriter out) {
+        if (annotations != null)
+            for (AnnotationGenerator annotation : annotations) {
+                annotation.print(out);
+                out.print(' ');
+            }
+        type.print(out);
+        out.print(' ').print(name);
+    }
+
     @Override
     public String toString() {
-        StringBuilder out = new StringBuilder();
-        if (annotations != null)
-            for (AnnotationGenerator annotation : annotations)
-                out.append(annotation).append(" ");
-        out.append(type).append(" ").append(name);
-        return out.toString();
+        return CodeWriter.toString(this::print);
     }
 
 }
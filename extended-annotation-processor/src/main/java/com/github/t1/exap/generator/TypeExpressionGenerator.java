@@ -10,8 +10,7 @@ public class TypeExpressionGenerator {
     private List<Object> args;
 
     public TypeExpressionGenerator(TypeGenerator container, Type type) {
-        this(container, type.getSimpleName());
-        container.addImport(type);
+        this(container, container.reference(type));
     }
 
     public TypeExpressionGenerator(TypeGenerator container, String type) {
@@ -30,7 +29,6 @@ public class TypeExpressionGenerator {
     }
 
     public TypeExpressionGenerator typeArg(Type typeArg) {
-        container.addImport(typeArg);
         TypeExpressionGenerator sub = new TypeExpressionGenerator(container, typeArg);
         if (args == null)
             args = new ArrayList<>();
@@ -38,16 +36,25 @@ public class TypeExpressionGenerator {
         return sub;
     }
 
-    @Override
-    public String toString() {
-        StringBuilder out = new StringBuilder();
-        out.append(type);
+    public void print(CodeWriter out) {
+        out.print(type);
         if (args != null) {
-            StringJoiner joiner = new StringJoiner(", ", "<", ">");
-            for (Object arg : args)
-                joiner.add(arg.toString());
-            out.append(joiner);
+            out.print('<');
+            for (int i = 0; i < args.size(); i++) {
+                if (i > 0)
+                    out.print(", ");
+                Object arg = args.get(i);
+                if (arg instanceof TypeExpressionGenerator)
+                    ((TypeExpressionGenerator) arg).print(out);
+                else
+                    out.print((String) arg);
+            }
+            out.print('>');
         }
-        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        return CodeWriter.toString(this::print);
     }
 }
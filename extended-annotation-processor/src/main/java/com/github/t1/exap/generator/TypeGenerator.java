@@ -14,9 +14,12 @@ import com.github.t1.exap.reflection.Package;
 public class TypeGenerator implements AutoCloseable {
     private final Logger log;
     private final Package pkg;
+    private final String packageName;
     private final String typeName;
+    private final boolean batched;
 
-    private ImportGenerator imports = new ImportGenerator();
+    private final ImportGenerator imports;
+    private final List<Elemental> originatingElements = new ArrayList<>();
     private JavaDocGenerator javaDoc;
     private TypeKind kind = CLASS;
     private List<String> typeParameters;
@@ -26,14 +29,22 @@ public class TypeGenerator implements AutoCloseable {
     private List<MethodGenerator> methods;
 
     public TypeGenerator(Logger log, Package pkg, String typeName) {
+        this(log, pkg, typeName, false);
+    }
+
+    /** @param batched rendered and written by a {@link GenerationBatch}, not when closed */
+    TypeGenerator(Logger log, Package pkg, String typeName, boolean batched) {
         this.log = log;
         this.pkg = pkg;
+        this.packageName = (pkg.isRoot() || pkg.getName() == null) ? "" : pkg.getName();
         this.typeName = typeName;
+        this.batched = batched;
+        this.imports = new ImportGenerator(packageName, typeName);
     }
 
     public void javaDoc(String javaDoc) {
         if (javaDoc != null && !javaDoc.isEmpty())
-            this.javaDoc = new JavaDocGenerator("", javaDoc);
+            this.javaDoc = new JavaDocGenerator(javaDoc);
     }
 
     public void kind(TypeKind kind) {
@@ -50,6 +61,17 @@ public class TypeGenerator implements AutoCloseable {
         return this;
     }
 
+    /** The element the type is generated from, e.g. the annotated type, so incremental builds know what to rebuild */
+    public TypeGenerator addOriginatingElement(Elemental element) {
+        originatingElements.add(element);
+        return this;
+    }
+
+    /** Add the import, if required, and return the name to reference the type in the source */
+    String reference(Type type) {
+        return imports.add(type);
+    }
+
     public void addTypeParameter(String typeParameter) {
         if (typeParameters == null)
             typeParameters = new ArrayList<>();
@@ -100,60 +122,89 @@ public class TypeGenerator implements AutoCloseable {
 
     @Override
     public void close() {
-        Resource resource = pkg.createSource(typeName);
-        log.debug("write {} to {}", typeName, resource.getName());
-        try (Writer writer = resource.openWriter()) {
-            PrintWriter out = new PrintWriter(writer);
+        if (batched)
+            return;
+        try (Writer writer = openSource()) {
+            CodeWriter out = new CodeWriter(writer);
             print(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Write the source rendered by a {@link GenerationBatch} */
+    void write(String source) {
+        try (Writer writer = openSource()) {
+            writer.write(source);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private Writer openSource() throws IOException {
+        Resource resource = pkg.createSource(typeName, originatingElements.toArray(new Elemental[0]));
+        log.debug("write {} to {}", typeName, resource.getName());
+        return resource.openWriter();
+    }
+
     public void print(PrintWriter out) {
+        CodeWriter code = new CodeWriter(out);
+        print(code);
+        code.flush();
+    }
+
+    public void print(CodeWriter out) {
         printHeader(out);
         printType(out);
     }
 
-    private void printHeader(PrintWriter out) {
-        if (!pkg.isRoot()) {
-            out.println("package " + pkg.getName() + ";");
+    private void printHeader(CodeWriter out) {
+        if (!packageName.isEmpty()) {
+            out.print("package ").print(packageName).println(";");
             out.println();
         }
         imports.print(out);
     }
 
-    private void printType(PrintWriter out) {
+    private void printType(CodeWriter out) {
         if (javaDoc != null)
             javaDoc.print(out);
         printAnnotations(out);
-        out.append("public ").append(kind.toString()).append(" ").append(typeName);
+        out.print("public ").print(kind.toString()).print(' ').print(typeName);
         printTypeParams(out);
         out.println(" {");
+        out.indent();
         printMethods(out, m -> m.isStatic());
         printFields(out);
         printConstructors(out);
         printMethods(out, m -> !m.isStatic());
+        out.outdent();
         out.println("}");
     }
 
-    private void printAnnotations(PrintWriter out) {
+    private void printAnnotations(CodeWriter out) {
         if (annotations == null)
             return;
-        for (AnnotationGenerator annotation : annotations)
-            out.println(annotation.toString());
+        for (AnnotationGenerator annotation : annotations) {
+            annotation.print(out);
+            out.println();
+        }
     }
 
-    private void printTypeParams(PrintWriter out) {
+    private void printTypeParams(CodeWriter out) {
         if (typeParameters == null)
             return;
-        StringJoiner joiner = new StringJoiner(", ", "<", ">");
-        for (String typeParameter : typeParameters)
-            joiner.add(typeParameter);
-        out.print(joiner);
+        out.print('<');
+        for (int i = 0; i < typeParameters.size(); i++) {
+            if (i > 0)
+                out.print(", ");
+            out.print(typeParameters.get(i));
+        }
+        out.print('>');
     }
 
-    private void printMethods(PrintWriter out, Predicate<MethodGenerator> filter) {
+    private void printMethods(CodeWriter out, Predicate<MethodGenerator> filter) {
         if (methods == null)
             return;
         for (MethodGenerator method : methods) {
@@ -163,7 +214,7 @@ public class TypeGenerator implements AutoCloseable {
         }
     }
 
-    private void printFields(PrintWriter out) {
+    private void printFields(CodeWriter out) {
         if (fields == null)
             return;
         for (FieldGenerator field : fields) {
@@ -172,7 +223,7 @@ public class TypeGenerator implements AutoCloseable {
         out.println();
     }
 
-    private void printConstructors(PrintWriter out) {
+    private void printConstructors(CodeWriter out) {
         if (constructors == null)
             return;
         for (ConstructorGenerator constructor : constructors) {
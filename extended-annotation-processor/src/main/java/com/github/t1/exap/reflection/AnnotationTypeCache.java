@@ -0,0 +1,112 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+import static javax.lang.model.element.ElementKind.*;
+import static javax.lang.model.type.TypeKind.*;
+
+import java.lang.annotation.Repeatable;
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+
+import com.github.t1.exap.JavaDoc;
+
+/**
+ * The facts about annotation types that don't change during a compilation, so they can be shared by all
+ * {@link com.github.t1.exap.Round}s: which annotation type a {@link Repeatable} container contains, and the
+ * meta-annotations of annotation types.
+ */
+public class AnnotationTypeCache {
+    private final Map<Name, Optional<Name>> containedTypes = new HashMap<>();
+    private final Map<String, Set<String>> metaAnnotations = new HashMap<>();
+
+    /**
+     * The qualified name of the annotation type that the annotation type of this mirror is the {@link Repeatable}
+     * container of; or null, if it's not a container.
+     */
+    Name containedType(AnnotationMirror annotation) {
+        TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+        Optional<Name> containedType = containedTypes.get(annotationType.getQualifiedName());
+        if (containedType == null) {
+            containedType = Optional.ofNullable(resolveContainedType(annotationType));
+            containedTypes.put(annotationType.getQualifiedName(), containedType);
+        }
+        return containedType.orElse(null);
+    }
+
+    private static Name resolveContainedType(TypeElement container) {
+        for (Element member : container.getEnclosedElements())
+            if (member.getKind() == METHOD && member.getSimpleName().contentEquals("value")) {
+                TypeMirror returnType = ((ExecutableElement) member).getReturnType();
+                if (returnType.getKind() != ARRAY)
+                    return null;
+                TypeMirror componentType = ((ArrayType) returnType).getComponentType();
+                if (componentType.getKind() != DECLARED)
+                    return null;
+                TypeElement contained = (TypeElement) ((DeclaredType) componentType).asElement();
+                return isRepeatableIn(contained, container) ? contained.getQualifiedName() : null;
+            }
+        return null;
+    }
+
+    private static boolean isRepeatableIn(TypeElement contained, TypeElement container) {
+        for (AnnotationMirror annotation : contained.getAnnotationMirrors())
+            if (qualifiedName(annotation).contentEquals(Repeatable.class.getName()))
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation
+                        .getElementValues().entrySet())
+                    if (entry.getKey().getSimpleName().contentEquals("value")) {
+                        Object value = entry.getValue().getValue();
+                        return value instanceof DeclaredType
+                                && ((TypeElement) ((DeclaredType) value).asElement()).getQualifiedName()
+                                        .contentEquals(container.getQualifiedName());
+                    }
+        return false;
+    }
+
+    static Name qualifiedName(AnnotationMirror annotation) {
+        return ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName();
+    }
+
+    /**
+     * The qualified names of the annotations on that annotation type, and of the annotations on those, etc. The
+     * standard meta-annotations in <code>java.lang.annotation</code> are included, but not followed, as they annotate
+     * themselves. Other cycles are cut where they close, i.e. the types in a cycle don't see all of each other's
+     * meta-annotations.
+     * <p>
+     * Synchronized, as the cache of a {@link Snapshot} is used by many threads.
+     */
+    synchronized Set<String> metaAnnotations(Type annotationType) {
+        String name = nameOf(annotationType);
+        Set<String> result = metaAnnotations.get(name);
+        if (result == null) {
+            metaAnnotations.put(name, emptySet());
+            Set<String> names = new HashSet<>();
+            for (AnnotationWrapper annotation : annotationType.getAnnotationWrappers()) {
+                Type metaAnnotationType = annotation.getAnnotationType();
+                String metaAnnotation = nameOf(metaAnnotationType);
+                if (metaAnnotation.equals(JAVA_DOC)) // not a real annotation, but derived from the doc comment
+                    continue;
+                names.add(metaAnnotation);
+                if (!metaAnnotation.startsWith("java.lang.annotation."))
+                    names.addAll(metaAnnotations(metaAnnotationType));
+            }
+            result = unmodifiableSet(names);
+            metaAnnotations.put(name, result);
+        }
+        return result;
+    }
+
+    private static final String JAVA_DOC = JavaDoc.class.getName();
+
+    /** the reflection backend uses the binary name of nested types */
+    static String nameOf(Type annotationType) {
+        return annotationType.getFullName().replace('$', '.');
+    }
+
+    @Override
+    public String toString() {
+        return "AnnotationTypeCache[" + containedTypes.size() + " containers, " + metaAnnotations.size()
+                + " meta-annotated]";
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.t1.exap.reflection;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.*;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Typed views on an {@link AnnotationWrapper}: a proxy for an interface with a method for every annotation property
+ * the view needs, i.e. the annotation interface itself or a companion interface that declares <code>Type</code>
+ * instead of <code>Class</code> members. The accessors are resolved only once per view interface.
+ */
+class AnnotationViews {
+    /** A <code>ClassValue</code>, so the view interfaces and their class loaders can still be unloaded */
+    private static final ClassValue<Map<String, Function<AnnotationWrapper, Object>>> ACCESSORS =
+            new ClassValue<Map<String, Function<AnnotationWrapper, Object>>>() {
+                @Override
+                protected Map<String, Function<AnnotationWrapper, Object>> computeValue(Class<?> view) {
+                    return accessors(view);
+                }
+            };
+
+    static <T> T of(AnnotationWrapper wrapper, Class<T> view) {
+        if (!view.isInterface())
+            throw new IllegalArgumentException("annotation views must be interfaces, but " + view.getName() + " isn't");
+        Map<String, Function<AnnotationWrapper, Object>> accessors = ACCESSORS.get(view);
+        return view.cast(Proxy.newProxyInstance(view.getClassLoader(), new Class<?>[] { view },
+                (proxy, method, args) -> {
+                    Function<AnnotationWrapper, Object> accessor = accessors.get(method.getName());
+                    if (accessor != null && method.getParameterCount() == 0)
+                        return accessor.apply(wrapper);
+                    switch (method.getName()) {
+                    case "annotationType":
+                        return view;
+                    case "toString":
+                        return wrapper.toString();
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        throw new UnsupportedOperationException("unexpected call to " + method);
+                    }
+                }));
+    }
+
+    private static Map<String, Function<AnnotationWrapper, Object>> accessors(Class<?> view) {
+        Map<String, Function<AnnotationWrapper, Object>> accessors = new HashMap<>();
+        for (Method method : view.getMethods()) {
+            if (method.getDeclaringClass() == Annotation.class || Modifier.isStatic(method.getModifiers()))
+                continue;
+            if (method.getParameterCount() != 0 || method.isDefault())
+                throw new IllegalArgumentException("annotation view methods must be abstract and without parameters: "
+                        + method);
+            accessors.put(method.getName(), accessor(method));
+        }
+        return accessors;
+    }
+
+    private static Function<AnnotationWrapper, Object> accessor(Method method) {
+        String name = method.getName();
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class)
+            return w -> w.getBooleanProperty(name);
+        if (type == byte.class)
+            return w -> w.getByteProperty(name);
+        if (type == char.class)
+            return w -> w.getCharProperty(name);
+        if (type == short.class)
+            return w -> w.getShortProperty(name);
+        if (type == int.class)
+            return w -> w.getIntProperty(name);
+        if (type == long.class)
+            return w -> w.getLongProperty(name);
+        if (type == float.class)
+            return w -> w.getFloatProperty(name);
+        if (type == double.class)
+            return w -> w.getDoubleProperty(name);
+        if (type == boolean[].class)
+            return w -> w.getBooleanArrayProperty(name);
+        if (type == byte[].class)
+            return w -> w.getByteArrayProperty(name);
+        if (type == char[].class)
+            return w -> w.getCharArrayProperty(name);
+        if (type == short[].class)
+            return w -> w.getShortArrayProperty(name);
+        if (type == int[].class)
+            return w -> w.getIntArrayProperty(name);
+        if (type == long[].class)
+            return w -> w.getLongArrayProperty(name);
+        if (type == float[].class)
+            return w -> w.getFloatArrayProperty(name);
+        if (type == double[].class)
+            return w -> w.getDoubleArrayProperty(name);
+        if (type == List.class)
+            return listAccessor(name, elementType(method));
+        if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            Function<AnnotationWrapper, Object> list = listAccessor(name, componentType);
+            return w -> toArray((List<?>) list.apply(w), componentType);
+        }
+        if (type == String.class)
+            return w -> w.getStringProperty(name);
+        if (type == Type.class)
+            return w -> w.getTypeProperty(name);
+        if (type == AnnotationWrapper.class)
+            return w -> w.getAnnotationProperty(name);
+        if (type.isEnum())
+            return w -> enumValue(type, w.getEnumProperty(name));
+        if (type.isInterface())
+            return w -> w.getAnnotationProperty(name).as(type);
+        throw unsupported(method);
+    }
+
+    private static Function<AnnotationWrapper, Object> listAccessor(String name, Class<?> elementType) {
+        if (elementType == Boolean.class)
+            return w -> w.getBooleanProperties(name);
+        if (elementType == Byte.class)
+            return w -> w.getByteProperties(name);
+        if (elementType == Character.class)
+            return w -> w.getCharProperties(name);
+        if (elementType == Short.class)
+            return w -> w.getShortProperties(name);
+        if (elementType == Integer.class)
+            return w -> w.getIntProperties(name);
+        if (elementType == Long.class)
+            return w -> w.getLongProperties(name);
+        if (elementType == Float.class)
+            return w -> w.getFloatProperties(name);
+        if (elementType == Double.class)
+            return w -> w.getDoubleProperties(name);
+        if (elementType == String.class)
+            return w -> w.getStringProperties(name);
+        if (elementType == Type.class)
+            return w -> w.getTypeProperties(name);
+        if (elementType == AnnotationWrapper.class)
+            return w -> w.getAnnotationProperties(name);
+        if (elementType.isEnum())
+            return w -> {
+                List<Object> list = new ArrayList<>();
+                for (String value : w.getEnumProperties(name))
+                    list.add(enumValue(elementType, value));
+                return list;
+            };
+        if (elementType.isInterface())
+            return w -> {
+                List<Object> list = new ArrayList<>();
+                for (AnnotationWrapper value : w.getAnnotationProperties(name))
+                    list.add(value.as(elementType));
+                return list;
+            };
+        throw new IllegalArgumentException("unsupported annotation view element type " + elementType.getName()
+                + " of property " + name + ((elementType == Class.class) ? "; use Type instead" : ""));
+    }
+
+    private static Class<?> elementType(Method method) {
+        java.lang.reflect.Type returnType = method.getGenericReturnType();
+        if (returnType instanceof ParameterizedType) {
+            java.lang.reflect.Type elementType = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+            if (elementType instanceof Class)
+                return (Class<?>) elementType;
+        }
+        throw unsupported(method);
+    }
+
+    private static IllegalArgumentException unsupported(Method method) {
+        return new IllegalArgumentException("unsupported annotation view return type " + method.getGenericReturnType()
+                + " of " + method + ((method.getReturnType() == Class.class) ? "; use Type instead" : ""));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object enumValue(Class<?> type, String name) {
+        return Enum.valueOf((Class<? extends Enum>) type, name);
+    }
+
+    private static Object toArray(List<?> list, Class<?> componentType) {
+        Object array = Array.newInstance(componentType, list.size());
+        for (int i = 0; i < list.size(); i++)
+            Array.set(array, i, list.get(i));
+        return array;
+    }
+}
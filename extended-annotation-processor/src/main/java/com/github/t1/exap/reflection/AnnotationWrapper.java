@@ -7,6 +7,7 @@ import static java.util.Objects.*;
 import java.lang.annotation.Repeatable;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.stream.*;
 
 import javax.lang.model.element.*;
 import javax.lang.model.type.*;
@@ -26,12 +27,18 @@ import com.github.t1.exap.Round;
  */
 public class AnnotationWrapper extends Elemental {
     private final AnnotationMirror annotationMirror;
+    private Map<String, AnnotationValue> values = null;
 
     AnnotationWrapper(AnnotationMirror annotationMirror, Round round) {
         super(round);
         this.annotationMirror = requireNonNull(annotationMirror);
     }
 
+    /** Detached from the round, for the {@link Snapshot}s */
+    AnnotationWrapper(AnnotationMirror annotationMirror) {
+        this.annotationMirror = requireNonNull(annotationMirror);
+    }
+
     @Override
     protected Element getElement() {
         return types().asElement(annotationMirror.getAnnotationType());
@@ -97,6 +104,16 @@ public class AnnotationWrapper extends Elemental {
         return null;
     }
 
+    /**
+     * A typed view on this annotation: the annotation interface itself or a companion interface with the same method
+     * names, but that returns {@link Type} (or <code>List&lt;Type&gt;</code>) for properties of type
+     * <code>Class</code>, which are generally not loadable in annotation processors. Lists can be used instead of
+     * arrays; nested annotations can be views again or {@link AnnotationWrapper}s.
+     */
+    public <T> T as(Class<T> view) {
+        return AnnotationViews.of(this, view);
+    }
+
     public Type getAnnotationType() {
         return Type.of(annotationMirror.getAnnotationType(), round());
     }
@@ -117,8 +134,22 @@ public class AnnotationWrapper extends Elemental {
     }
 
     public Object getProperty(String name) {
-        AnnotationValue annotationValue = AnnotationWrapperBuilder.getAnnotationValue(annotationMirror, name, round());
-        return (annotationValue == null) ? null : annotationValue.getValue();
+        AnnotationValue annotationValue = values().get(name);
+        if (annotationValue == null)
+            throw new IllegalArgumentException("no property \"" + name + "\" found in annotation " + annotationMirror);
+        return annotationValue.getValue();
+    }
+
+    /** The values of all properties incl. the defaults, resolved only once, as javac builds a new map every time */
+    private Map<String, AnnotationValue> values() {
+        if (values == null) {
+            Map<? extends ExecutableElement, ? extends AnnotationValue> map =
+                    elements().getElementValuesWithDefaults(annotationMirror);
+            values = new HashMap<>(map.size() * 4 / 3 + 1);
+            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : map.entrySet())
+                values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        return values;
     }
 
     protected Object getSingleProperty(String name) {
@@ -282,6 +313,114 @@ public class AnnotationWrapper extends Elemental {
         return list;
     }
 
+    /** Like {@link #getBooleanProperties(String)}, but without boxing */
+    public boolean[] getBooleanArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Boolean)
+            return new boolean[] { (Boolean) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        boolean[] array = new boolean[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Boolean) list.get(i).getValue();
+        return array;
+    }
+
+    /** Like {@link #getByteProperties(String)}, but without boxing */
+    public byte[] getByteArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Byte)
+            return new byte[] { (Byte) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        byte[] array = new byte[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Byte) list.get(i).getValue();
+        return array;
+    }
+
+    /** Like {@link #getCharProperties(String)}, but without boxing */
+    public char[] getCharArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Character)
+            return new char[] { (Character) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        char[] array = new char[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Character) list.get(i).getValue();
+        return array;
+    }
+
+    /** Like {@link #getShortProperties(String)}, but without boxing */
+    public short[] getShortArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Short)
+            return new short[] { (Short) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        short[] array = new short[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Short) list.get(i).getValue();
+        return array;
+    }
+
+    /** Like {@link #getIntProperties(String)}, but without boxing */
+    public int[] getIntArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Integer)
+            return new int[] { (Integer) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Integer) list.get(i).getValue();
+        return array;
+    }
+
+    public IntStream getIntPropertyStream(String name) {
+        return IntStream.of(getIntArrayProperty(name));
+    }
+
+    /** Like {@link #getLongProperties(String)}, but without boxing */
+    public long[] getLongArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Long)
+            return new long[] { (Long) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        long[] array = new long[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Long) list.get(i).getValue();
+        return array;
+    }
+
+    public LongStream getLongPropertyStream(String name) {
+        return LongStream.of(getLongArrayProperty(name));
+    }
+
+    /** Like {@link #getFloatProperties(String)}, but without boxing */
+    public float[] getFloatArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Float)
+            return new float[] { (Float) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        float[] array = new float[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Float) list.get(i).getValue();
+        return array;
+    }
+
+    /** Like {@link #getDoubleProperties(String)}, but without boxing */
+    public double[] getDoubleArrayProperty(String name) {
+        Object value = getProperty(name);
+        if (value instanceof Double)
+            return new double[] { (Double) value };
+        List<AnnotationValue> list = getAnnotationValueListProperty(name);
+        double[] array = new double[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = (Double) list.get(i).getValue();
+        return array;
+    }
+
+    public DoubleStream getDoublePropertyStream(String name) {
+        return DoubleStream.of(getDoubleArrayProperty(name));
+    }
+
     public String getStringProperty(String name) {
         return getSingleProperty(name).toString();
     }
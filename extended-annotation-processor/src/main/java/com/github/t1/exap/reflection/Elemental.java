@@ -7,7 +7,7 @@ import static javax.lang.model.element.Modifier.*;
 import static javax.tools.Diagnostic.Kind.*;
 
 import java.lang.annotation.Annotation;
-import java.util.List;
+import java.util.*;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.*;
@@ -20,24 +20,33 @@ import com.github.t1.exap.*;
 
 public abstract class Elemental {
     private final Round round;
-    private final AnnotationWrapperBuilder annotationWrapperBuilder;
+    private boolean docCommentFetched = false;
+    private String docComment;
+    private JavaDoc javaDoc;
+    private Optional<JavaDocModel> javaDocModel;
 
     public Elemental(Round round) {
         this.round = requireNonNull(round);
-        this.annotationWrapperBuilder = new AnnotationWrapperBuilder(round);
+    }
+
+    /** For the {@link Snapshot}s: they are detached from the round, so they can't reach the compiler */
+    Elemental() {
+        this.round = null;
     }
 
     public Round round() {
+        if (round == null)
+            throw new UnsupportedOperationException("the elements of a snapshot are detached from the round");
         return round;
     }
 
     @Deprecated
     protected ProcessingEnvironment env() {
-        return round.env();
+        return round().env();
     }
 
     public Logger log() {
-        return round.log();
+        return round().log();
     }
 
     protected abstract Element getElement();
@@ -86,10 +95,28 @@ public abstract class Elemental {
         return is(TRANSIENT);
     }
 
+    public boolean isAbstract() {
+        return is(ABSTRACT);
+    }
+
     protected boolean is(Modifier modifier) {
         return getElement().getModifiers().contains(modifier);
     }
 
+    /** The modifiers of this element, except those the backend doesn't know, e.g. <code>default</code> in reflection */
+    Set<Modifier> modifiers() {
+        Set<Modifier> modifiers = EnumSet.noneOf(Modifier.class);
+        for (Modifier modifier : Modifier.values()) {
+            try {
+                if (is(modifier))
+                    modifiers.add(modifier);
+            } catch (UnsupportedOperationException e) {
+                // unknown to the backend
+            }
+        }
+        return modifiers;
+    }
+
     public <T extends Annotation> boolean isAnnotated(Class<T> type) {
         return !getAnnotations(type).isEmpty();
     }
@@ -124,9 +151,9 @@ public abstract class Elemental {
     }
 
     public List<AnnotationWrapper> getAnnotationWrappers() {
-        List<AnnotationWrapper> annotations = annotationWrapperBuilder.allOn(getElement());
+        List<AnnotationWrapper> annotations = annotationWrapperBuilder().allOn(getElement());
         if (!containsJavaDoc(annotations) && docComment() != null)
-            annotations.add(0, new ReflectionAnnotationWrapper(javaDoc(), round));
+            annotations.add(0, new ReflectionAnnotationWrapper(javaDoc(), round()));
         return annotations;
     }
 
@@ -138,29 +165,92 @@ public abstract class Elemental {
     }
 
     public <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
-        List<AnnotationWrapper> annotations = annotationWrapperBuilder.ofTypeOn(getElement(), type.getName());
+        List<AnnotationWrapper> annotations = annotationWrapperBuilder().ofTypeOn(getElement(), nameOf(type));
         if (annotations.isEmpty() && docComment() != null)
-            annotations.add(new ReflectionAnnotationWrapper(javaDoc(), round));
+            annotations.add(new ReflectionAnnotationWrapper(javaDoc(), round()));
         return annotations;
     }
 
-    private JavaDoc javaDoc() {
-        return new JavaDoc() {
-            private final String docComment = docComment();
+    /**
+     * Is this element annotated with that annotation, either directly or on one of its annotations, i.e. a stereotype,
+     * or on one of their annotations, etc.
+     */
+    public boolean isMetaAnnotated(Class<? extends Annotation> type) {
+        String name = nameOf(type);
+        for (AnnotationWrapper annotation : getAnnotationWrappers()) {
+            Type annotationType = annotation.getAnnotationType();
+            if (AnnotationTypeCache.nameOf(annotationType).equals(name)
+                    || metaAnnotations(annotationType).contains(name))
+                return true;
+        }
+        return false;
+    }
 
-            @Override
-            public Class<? extends Annotation> annotationType() {
-                return JavaDoc.class;
-            }
+    /**
+     * The annotations on this element that are annotated with that meta-annotation, i.e. stereotypes, either directly
+     * or on one of their annotations, etc.
+     */
+    public List<AnnotationWrapper> getStereotypes(Class<? extends Annotation> metaAnnotation) {
+        String name = nameOf(metaAnnotation);
+        List<AnnotationWrapper> result = new ArrayList<>();
+        for (AnnotationWrapper annotation : getAnnotationWrappers())
+            if (metaAnnotations(annotation.getAnnotationType()).contains(name))
+                result.add(annotation);
+        return result;
+    }
 
-            @Override
-            public String value() {
-                return docComment.trim();
-            }
-        };
+    private Set<String> metaAnnotations(Type annotationType) {
+        return annotationTypes().metaAnnotations(annotationType);
+    }
+
+    AnnotationTypeCache annotationTypes() {
+        return round().cache().annotationTypes();
+    }
+
+    /** the annotation mirrors of nested annotation types have the canonical name, not the binary name */
+    static String nameOf(Class<?> type) {
+        return (type.getCanonicalName() == null) ? type.getName() : type.getCanonicalName();
+    }
+
+    private AnnotationWrapperBuilder annotationWrapperBuilder() {
+        return round().cache().annotationWrapperBuilder();
+    }
+
+    /**
+     * The parsed {@link JavaDoc} annotation or doc comment; or <code>null</code>, if there is neither. Parsed only
+     * once.
+     */
+    public JavaDocModel getJavaDoc() {
+        if (javaDocModel == null) {
+            JavaDoc annotation = getAnnotation(JavaDoc.class);
+            javaDocModel = Optional.ofNullable((annotation == null) ? null : new JavaDocModel(annotation.value()));
+        }
+        return javaDocModel.orElse(null);
+    }
+
+    private JavaDoc javaDoc() {
+        if (javaDoc == null)
+            javaDoc = new JavaDoc() {
+                private final String docComment = docComment();
+
+                @Override
+                public Class<? extends Annotation> annotationType() {
+                    return JavaDoc.class;
+                }
+
+                @Override
+                public String value() {
+                    return docComment.trim();
+                }
+            };
+        return javaDoc;
     }
 
     private String docComment() {
-        return elements().getDocComment(this.getElement());
+        if (!docCommentFetched) {
+            docComment = elements().getDocComment(this.getElement());
+            docCommentFetched = true;
+        }
+        return docComment;
     }
 }
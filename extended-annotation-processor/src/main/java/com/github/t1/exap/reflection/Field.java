@@ -11,6 +11,14 @@ import javax.lang.model.type.*;
 import com.github.t1.exap.Round;
 
 public class Field extends Elemental {
+    /**
+     * The same element always results in the same instance within a {@link Round}. The declaring type is the type
+     * that encloses the field.
+     */
+    public static Field of(VariableElement field, Round round) {
+        return round.cache().field(Type.of(field.getEnclosingElement().asType(), round), field);
+    }
+
     private final Type declaringType;
     private final VariableElement field;
 
@@ -20,6 +28,12 @@ public class Field extends Elemental {
         this.field = requireNonNull(field);
     }
 
+    /** Detached from the round, for the {@link Snapshot}s */
+    Field(Type declaringType, VariableElement field) {
+        this.declaringType = requireNonNull(declaringType);
+        this.field = requireNonNull(field);
+    }
+
     @Override
     protected VariableElement getElement() {
         return field;
@@ -0,0 +1,36 @@
+package com.github.t1.exap.reflection;
+
+/** The name and content of a source or resource file created through the {@link GeneratedFiles} */
+class GeneratedFile {
+    private final String pkg;
+    private final String name;
+    private final String content;
+
+    /** @param pkg <code>null</code> for a source file; then the name is the fully qualified class name */
+    GeneratedFile(String pkg, String name, String content) {
+        this.pkg = pkg;
+        this.name = name;
+        this.content = content;
+    }
+
+    boolean isSource() {
+        return pkg == null;
+    }
+
+    String getPkg() {
+        return pkg;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getContent() {
+        return content;
+    }
+
+    @Override
+    public String toString() {
+        return isSource() ? name : (pkg + "/" + name);
+    }
+}
@@ -0,0 +1,258 @@
+package com.github.t1.exap.reflection;
+
+import static javax.tools.StandardLocation.*;
+
+import java.io.*;
+import java.util.*;
+
+import javax.annotation.processing.*;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+
+import com.github.t1.exap.*;
+import com.github.t1.exap.reflection.Instrumentation.Stopwatch;
+
+/**
+ * Creates the files generated within one {@link Round} and counts them.
+ * <p>
+ * With the processor option <code>-Aexap.skipUnchanged</code>, resources are rendered to memory and compared with
+ * the existing file in the class output; if they are identical, the file is not touched, so incremental builds and
+ * IDEs don't see a change. Sources are always written, as javac only compiles the sources created through the
+ * {@link Filer}. Resources of {@link Incremental incremental} processors are always written, too, as Gradle only keeps
+ * the files it learns about from the {@link Filer}, together with their originating elements.
+ * <p>
+ * The originating elements are passed on to the {@link Filer}, so incremental builds know which files to regenerate
+ * when a source changes. For {@link Incremental#ISOLATING isolating} processors, every file must have exactly one.
+ */
+public class GeneratedFiles {
+    public static final String SKIP_UNCHANGED = "exap.skipUnchanged";
+
+    private final Filer filer;
+    private final boolean skipUnchanged;
+    private final Incremental incremental;
+    private final Instrumentation instrumentation;
+
+    private List<GeneratedFile> recording;
+    private int written;
+    private int skipped;
+
+    public GeneratedFiles(ProcessingEnvironment processingEnv) {
+        this(processingEnv, Incremental.NONE, null);
+    }
+
+    /** @param instrumentation <code>null</code> if it's not enabled */
+    public GeneratedFiles(ProcessingEnvironment processingEnv, Incremental incremental,
+            Instrumentation instrumentation) {
+        this.filer = processingEnv.getFiler();
+        this.skipUnchanged = isEnabled(processingEnv.getOptions(), SKIP_UNCHANGED) && incremental == Incremental.NONE;
+        this.incremental = incremental;
+        this.instrumentation = instrumentation;
+    }
+
+    /** <code>-Akey</code> and <code>-Akey=true</code> enable the option */
+    private static boolean isEnabled(Map<String, String> options, String key) {
+        return options != null && options.containsKey(key)
+                && (options.get(key) == null || Boolean.parseBoolean(options.get(key)));
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    public Incremental getIncremental() {
+        return incremental;
+    }
+
+    public Resource createSource(String name, Elemental... originatingElements) throws IOException {
+        Stopwatch stopwatch = stopwatch();
+        Element[] elements = elements(name, originatingElements);
+        ++written;
+        return measured(recorded(new Resource(filer.createSourceFile(name, elements)), null, name), stopwatch, name);
+    }
+
+    public Resource createResource(String pkg, String relativeName, Elemental... originatingElements)
+            throws IOException {
+        Stopwatch stopwatch = stopwatch();
+        Element[] elements = elements(relativeName, originatingElements);
+        Resource resource;
+        FileObject existing = skipUnchanged ? existing(pkg, relativeName) : null;
+        if (existing != null) {
+            resource = new UnchangedResource(existing, pkg, relativeName, elements);
+        } else {
+            ++written;
+            resource = new Resource(filer.createResource(CLASS_OUTPUT, pkg, relativeName, elements));
+        }
+        return measured(recorded(resource, pkg, relativeName), stopwatch, pkg + "/" + relativeName);
+    }
+
+    private Stopwatch stopwatch() {
+        return (instrumentation == null) ? null : instrumentation.start();
+    }
+
+    /** From creating the file until the writer is closed, i.e. incl. rendering the content */
+    private Resource measured(Resource resource, Stopwatch stopwatch, String name) {
+        if (stopwatch == null)
+            return resource;
+        return new Resource(null) {
+            @Override
+            public String getName() {
+                return resource.getName();
+            }
+
+            @Override
+            public Writer openWriter() throws IOException {
+                return new FilterWriter(resource.openWriter()) {
+                    private boolean closed = false;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (closed)
+                            return;
+                        closed = true;
+                        super.close();
+                        instrumentation.file(name, stopwatch.stop());
+                    }
+                };
+            }
+        };
+    }
+
+    /** The elements of the reflection backend are <code>null</code> or dummies; the reflection filer ignores them */
+    private Element[] elements(String name, Elemental[] originatingElements) {
+        if (incremental == Incremental.ISOLATING && originatingElements.length != 1)
+            throw new IllegalArgumentException("an isolating processor must create every file with exactly one"
+                    + " originating element, but " + name + " has " + originatingElements.length);
+        List<Element> elements = new ArrayList<>(originatingElements.length);
+        for (Elemental originatingElement : originatingElements)
+            if (originatingElement.getElement() != null)
+                elements.add(originatingElement.getElement());
+        return elements.toArray(new Element[0]);
+    }
+
+    /** Write that file again, e.g. from the {@link OutputCache} */
+    void replay(GeneratedFile file, Elemental... originatingElements) throws IOException {
+        Resource resource = file.isSource() ? createSource(file.getName(), originatingElements)
+                : createResource(file.getPkg(), file.getName(), originatingElements);
+        try (Writer writer = resource.openWriter()) {
+            writer.write(file.getContent());
+        }
+    }
+
+    private FileObject existing(String pkg, String relativeName) {
+        try {
+            return filer.getResource(CLASS_OUTPUT, pkg, relativeName);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Collect the content of all files created until {@link #stopRecording()} */
+    void startRecording() {
+        if (recording != null)
+            throw new IllegalStateException("already recording");
+        recording = new ArrayList<>();
+    }
+
+    List<GeneratedFile> stopRecording() {
+        List<GeneratedFile> result = recording;
+        recording = null;
+        return result;
+    }
+
+    private Resource recorded(Resource resource, String pkg, String name) {
+        if (recording == null)
+            return resource;
+        List<GeneratedFile> files = recording;
+        return new Resource(null) {
+            @Override
+            public String getName() {
+                return resource.getName();
+            }
+
+            @Override
+            public Writer openWriter() throws IOException {
+                Writer delegate = resource.openWriter();
+                return new StringWriter() {
+                    private boolean closed = false;
+
+                    @Override
+                    public void close() throws IOException {
+                        if (closed)
+                            return;
+                        closed = true;
+                        try (Writer writer = delegate) {
+                            writer.write(toString());
+                        }
+                        files.add(new GeneratedFile(pkg, name, toString()));
+                    }
+                };
+            }
+        };
+    }
+
+    /** The number of files created in this round */
+    public int getWritten() {
+        return written;
+    }
+
+    /** The number of resources not written in this round, as they were unchanged */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    @Override
+    public String toString() {
+        return "written: " + written + ", skipped: " + skipped;
+    }
+
+    /** Collects the content and creates the file only if it's different from the existing file */
+    private class UnchangedResource extends Resource {
+        private final FileObject existing;
+        private final String pkg;
+        private final String relativeName;
+        private final Element[] originatingElements;
+
+        private UnchangedResource(FileObject existing, String pkg, String relativeName,
+                Element[] originatingElements) {
+            super(existing);
+            this.existing = existing;
+            this.pkg = pkg;
+            this.relativeName = relativeName;
+            this.originatingElements = originatingElements;
+        }
+
+        @Override
+        public Writer openWriter() {
+            return new StringWriter() {
+                private boolean closed = false;
+
+                @Override
+                public void close() throws IOException {
+                    if (closed)
+                        return;
+                    closed = true;
+                    String content = toString();
+                    CharSequence existingContent = existingContent();
+                    if (existingContent != null && content.contentEquals(existingContent)) {
+                        ++skipped;
+                    } else {
+                        ++written;
+                        FileObject file = filer.createResource(CLASS_OUTPUT, pkg, relativeName, originatingElements);
+                        try (Writer writer = file.openWriter()) {
+                            writer.write(content);
+                        }
+                    }
+                }
+            };
+        }
+
+        /** <code>null</code> if the file doesn't exist (yet) */
+        private CharSequence existingContent() {
+            try {
+                return existing.getCharContent(true);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.t1.exap.reflection;
+
+import java.lang.management.*;
+import java.util.*;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+import com.github.t1.exap.Round;
+
+/**
+ * Measures the wall time, the CPU time, and the bytes allocated by a processor: per round, per call of
+ * {@link com.github.t1.exap.ExtendedAbstractProcessor#process(Round)}, and per generated file, from creating it until
+ * its writer is closed. It's enabled with the processor option <code>-Aexap.instrument</code>, which prints a summary
+ * as a note after the last round; with <code>-Aexap.instrument=json</code>, the measurements are also written as a
+ * JSON resource <code>exap-instrumentation/<em>processor-class-name</em>.json</code> into the class output.
+ * <p>
+ * CPU time and allocations are taken from the {@link ThreadMXBean} for the processor thread only, so work done on
+ * other threads, e.g. by a {@link com.github.t1.exap.generator.GenerationBatch}, is only in the wall time. They are
+ * <code>-1</code> if the JVM doesn't support measuring them.
+ * <p>
+ * Rounds {@link com.github.t1.exap.SupportedAnnotationClasses#skipEmptyRounds() skipped} are measured, too, but they
+ * have no process call.
+ */
+public class Instrumentation {
+    public static final String INSTRUMENT = "exap.instrument";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /** <code>null</code> if the {@link #INSTRUMENT} option is not set or <code>false</code> */
+    public static Instrumentation of(ProcessingEnvironment processingEnv) {
+        Map<String, String> options = processingEnv.getOptions();
+        if (options == null || !options.containsKey(INSTRUMENT))
+            return null;
+        String value = options.get(INSTRUMENT);
+        if ("false".equalsIgnoreCase(value))
+            return null;
+        return new Instrumentation("json".equalsIgnoreCase(value));
+    }
+
+    /** The resources used between {@link Instrumentation#start() starting} and {@link Stopwatch#stop() stopping} */
+    public static class Usage {
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+
+        private Usage(long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        private Usage plus(Usage that) {
+            return new Usage(wallNanos + that.wallNanos, sum(cpuNanos, that.cpuNanos),
+                    sum(allocatedBytes, that.allocatedBytes));
+        }
+
+        private static long sum(long a, long b) {
+            return (a < 0 || b < 0) ? -1 : (a + b);
+        }
+
+        @Override
+        public String toString() {
+            return "wall " + millis(wallNanos) + ", cpu " + millis(cpuNanos) + ", allocated "
+                    + kilobytes(allocatedBytes);
+        }
+
+        private static String millis(long nanos) {
+            return (nanos < 0) ? "?" : String.format(Locale.ROOT, "%.1f ms", nanos / 1_000_000.0);
+        }
+
+        private static String kilobytes(long bytes) {
+            return (bytes < 0) ? "?" : String.format(Locale.ROOT, "%,d kB", bytes / 1024);
+        }
+
+        private String json() {
+            return "{\"wallNanos\": " + wallNanos + ", \"cpuNanos\": " + cpuNanos + ", \"allocatedBytes\": "
+                    + allocatedBytes + "}";
+        }
+    }
+
+    /** Started on the processor thread, and must be stopped there, too */
+    public static class Stopwatch {
+        private final long wall = System.nanoTime();
+        private final long cpu = cpuTime();
+        private final long allocated = allocatedBytes();
+
+        private Stopwatch() {}
+
+        public Usage stop() {
+            return new Usage(System.nanoTime() - wall, delta(cpu, cpuTime()), delta(allocated, allocatedBytes()));
+        }
+
+        private static long delta(long start, long end) {
+            return (start < 0 || end < 0) ? -1 : (end - start);
+        }
+
+        private static long cpuTime() {
+            return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        }
+
+        private static long allocatedBytes() {
+            if (!(THREADS instanceof com.sun.management.ThreadMXBean))
+                return -1;
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            return threads.isThreadAllocatedMemorySupported()
+                    ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+        }
+    }
+
+    private final boolean json;
+    private final Map<Integer, Usage> rounds = new LinkedHashMap<>();
+    private final Map<Integer, Usage> processCalls = new LinkedHashMap<>();
+    private final Map<String, Usage> files = new LinkedHashMap<>();
+
+    Instrumentation(boolean json) {
+        this.json = json;
+    }
+
+    public boolean isJson() {
+        return json;
+    }
+
+    public Stopwatch start() {
+        return new Stopwatch();
+    }
+
+    public void round(int number, Usage usage) {
+        rounds.put(number, usage);
+    }
+
+    public void processCall(int roundNumber, Usage usage) {
+        processCalls.put(roundNumber, usage);
+    }
+
+    /** A file created more than once, e.g. a resource rewritten in a later round, adds up */
+    public void file(String name, Usage usage) {
+        files.merge(name, usage, Usage::plus);
+    }
+
+    public Map<Integer, Usage> getRounds() {
+        return rounds;
+    }
+
+    public Map<Integer, Usage> getProcessCalls() {
+        return processCalls;
+    }
+
+    public Map<String, Usage> getFiles() {
+        return files;
+    }
+
+    private static Usage total(Collection<Usage> usages) {
+        Usage total = new Usage(0, 0, 0);
+        for (Usage usage : usages)
+            total = total.plus(usage);
+        return total;
+    }
+
+    /** The text of the note printed after the last round */
+    public String summary(String processor) {
+        StringBuilder out = new StringBuilder();
+        out.append("instrumentation of ").append(processor).append(": ").append(rounds.size()).append(" rounds: ")
+                .append(total(rounds.values()));
+        out.append("\n  process calls: ").append(processCalls.size()).append(": ")
+                .append(total(processCalls.values()));
+        for (Map.Entry<Integer, Usage> round : rounds.entrySet()) {
+            out.append("\n  round ").append(round.getKey()).append(": ").append(round.getValue());
+            Usage processCall = processCalls.get(round.getKey());
+            out.append("; ").append((processCall == null) ? "skipped" : ("process: " + processCall));
+        }
+        out.append("\n  files: ").append(files.size()).append(": ").append(total(files.values()));
+        files.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().getWallNanos(), a.getValue().getWallNanos()))
+                .limit(5)
+                .forEach(file -> out.append("\n    ").append(file.getKey()).append(": ").append(file.getValue()));
+        return out.toString();
+    }
+
+    /** The content of the JSON report */
+    public String json(String processor) {
+        StringBuilder out = new StringBuilder();
+        out.append("{\n");
+        out.append("  \"processor\": ").append(quote(processor)).append(",\n");
+        out.append("  \"rounds\": ").append(json(rounds)).append(",\n");
+        out.append("  \"processCalls\": ").append(json(processCalls)).append(",\n");
+        out.append("  \"files\": ").append(json(files)).append("\n");
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static String json(Map<?, Usage> usages) {
+        StringJoiner out = new StringJoiner(",\n", "{\n", "\n  }");
+        out.setEmptyValue("{}");
+        for (Map.Entry<?, Usage> entry : usages.entrySet())
+            out.add("    " + quote(entry.getKey().toString()) + ": " + entry.getValue().json());
+        return out.toString();
+    }
+
+    private static String quote(String text) {
+        StringBuilder out = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\')
+                out.append('\\').append(c);
+            else if (c < ' ')
+                out.append(String.format("\\u%04x", (int) c));
+            else
+                out.append(c);
+        }
+        return out.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "instrumentation of " + rounds.size() + " rounds and " + files.size() + " files";
+    }
+}
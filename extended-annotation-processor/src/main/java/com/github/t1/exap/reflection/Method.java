@@ -1,7 +1,9 @@
 package com.github.t1.exap.reflection;
 
+import static java.util.Collections.*;
 import static java.util.Objects.*;
 
+import java.lang.annotation.Annotation;
 import java.util.*;
 
 import javax.lang.model.element.*;
@@ -9,8 +11,17 @@ import javax.lang.model.element.*;
 import com.github.t1.exap.Round;
 
 public class Method extends Elemental {
+    /**
+     * The same element always results in the same instance within a {@link Round}. The declaring type is the type
+     * that encloses the method.
+     */
+    public static Method of(ExecutableElement method, Round round) {
+        return round.cache().method(Type.of(method.getEnclosingElement().asType(), round), method);
+    }
+
     private final Type declaringType;
     private final ExecutableElement method;
+    private List<Parameter> parameters;
 
     public Method(Type declaringType, ExecutableElement method, Round round) {
         super(round);
@@ -18,6 +29,12 @@ public class Method extends Elemental {
         this.method = requireNonNull(method);
     }
 
+    /** Detached from the round, for the {@link Snapshot}s */
+    Method(Type declaringType, ExecutableElement method) {
+        this.declaringType = requireNonNull(declaringType);
+        this.method = requireNonNull(method);
+    }
+
     @Override
     protected ExecutableElement getElement() {
         return method;
@@ -27,21 +44,34 @@ public class Method extends Elemental {
         return method.getSimpleName().toString();
     }
 
+    /** The list is cached, so it can't be modified */
     public List<Parameter> getParameters() {
-        List<Parameter> result = new ArrayList<>();
-        for (VariableElement param : method.getParameters())
-            result.add(new Parameter(this, param));
-        return result;
+        if (parameters == null) {
+            List<Parameter> list = new ArrayList<>();
+            for (VariableElement param : method.getParameters())
+                list.add(new Parameter(this, param));
+            parameters = unmodifiableList(list);
+        }
+        return parameters;
     }
 
     public Parameter getParameter(int index) {
-        return new Parameter(this, method.getParameters().get(index));
+        return getParameters().get(index);
     }
 
     public Type getDeclaringType() {
         return declaringType;
     }
 
+    /**
+     * The annotations of that type on this method or, if there are none, on the nearest method it overrides that has
+     * some: first in the superclass and its supertypes, then in the interfaces and theirs.
+     */
+    public <T extends Annotation> List<AnnotationWrapper> findAnnotationWrappers(Class<T> type) {
+        return round().cache().declaration((TypeElement) method.getEnclosingElement()).hierarchyAnnotations(method,
+                nameOf(type));
+    }
+
     public Type getReturnType() {
         return Type.of(method.getReturnType(), round());
     }
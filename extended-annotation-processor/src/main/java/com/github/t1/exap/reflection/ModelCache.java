@@ -0,0 +1,140 @@
+package com.github.t1.exap.reflection;
+
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.Elements;
+
+import com.github.t1.exap.Round;
+
+/**
+ * The wrappers created within one {@link Round}, so the same {@link TypeMirror} or {@link Element} always results in
+ * the same wrapper instance, instead of creating new wrappers again and again, e.g. when looping over the methods of
+ * a type.
+ */
+public class ModelCache {
+    private final Round round;
+    private final AnnotationTypeCache annotationTypes;
+    private final AnnotationWrapperBuilder annotationWrapperBuilder;
+
+    private final Map<TypeMirror, Type> types = new IdentityHashMap<>();
+    private final Map<Type, Map<ExecutableElement, Method>> methods = new IdentityHashMap<>();
+    private final Map<Type, Map<VariableElement, Field>> fields = new IdentityHashMap<>();
+    private final Map<TypeElement, TypeDeclaration> declarations = new IdentityHashMap<>();
+    /** The qualified names of the declared types looked up since {@link #startRecording()}; <code>null</code> if not */
+    private Set<String> touched;
+
+    private int hits;
+    private int misses;
+
+    /** only for internal use. */
+    @Deprecated
+    public static ModelCache of(Round round, AnnotationTypeCache annotationTypes) {
+        return new ModelCache(round, annotationTypes);
+    }
+
+    private ModelCache(Round round, AnnotationTypeCache annotationTypes) {
+        this.round = round;
+        this.annotationTypes = annotationTypes;
+        this.annotationWrapperBuilder = new AnnotationWrapperBuilder(round, annotationTypes);
+    }
+
+    @SuppressWarnings("deprecation")
+    Elements elements() {
+        return round.env().getElementUtils();
+    }
+
+    AnnotationTypeCache annotationTypes() {
+        return annotationTypes;
+    }
+
+    AnnotationWrapperBuilder annotationWrapperBuilder() {
+        return annotationWrapperBuilder;
+    }
+
+    Type type(TypeMirror mirror) {
+        if (touched != null && mirror.getKind() == TypeKind.DECLARED)
+            touch((TypeElement) ((DeclaredType) mirror).asElement());
+        Type type = types.get(mirror);
+        if (type == null) {
+            type = new Type(mirror, round);
+            types.put(mirror, type);
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return type;
+    }
+
+    Method method(Type declaringType, ExecutableElement element) {
+        Map<ExecutableElement, Method> map = methods.computeIfAbsent(declaringType, t -> new IdentityHashMap<>());
+        Method method = map.get(element);
+        if (method == null) {
+            method = new Method(declaringType, element, round);
+            map.put(element, method);
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return method;
+    }
+
+    Field field(Type declaringType, VariableElement element) {
+        Map<VariableElement, Field> map = fields.computeIfAbsent(declaringType, t -> new IdentityHashMap<>());
+        Field field = map.get(element);
+        if (field == null) {
+            field = new Field(declaringType, element, round);
+            map.put(element, field);
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return field;
+    }
+
+    TypeDeclaration declaration(TypeElement element) {
+        if (touched != null)
+            touch(element);
+        return declarations.computeIfAbsent(element, e -> new TypeDeclaration(e, this));
+    }
+
+    /** Local and anonymous classes have no qualified name, so they can't be looked up again */
+    private void touch(TypeElement element) {
+        String name = element.getQualifiedName().toString();
+        if (!name.isEmpty())
+            touched.add(name);
+    }
+
+    /**
+     * Collect the qualified names of the declared types that are looked up, or whose members are read, until
+     * {@link #stopRecording()}. A {@link Type} caches its members, so reading them again is not recorded, if they were
+     * already read before the recording started.
+     */
+    void startRecording() {
+        if (touched != null)
+            throw new IllegalStateException("already recording");
+        touched = new LinkedHashSet<>();
+    }
+
+    Set<String> stopRecording() {
+        Set<String> result = touched;
+        touched = null;
+        return result;
+    }
+
+    /** The number of lookups that returned an already existing wrapper */
+    public int hits() {
+        return hits;
+    }
+
+    /** The number of lookups that had to create a new wrapper */
+    public int misses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return "ModelCache[hits=" + hits + ", misses=" + misses + "]";
+    }
+}
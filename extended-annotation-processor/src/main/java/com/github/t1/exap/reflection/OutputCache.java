@@ -0,0 +1,443 @@
+package com.github.t1.exap.reflection;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.nio.file.StandardCopyOption.*;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.net.URISyntaxException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.*;
+import java.time.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.Round;
+
+/**
+ * Caches the files generated for a type on disk, so the next build can replay them instead of running the generation
+ * again, if the type didn't change; even when the build runs from scratch, e.g. on a CI agent with a restored cache
+ * directory. It's enabled with the processor option <code>-Aexap.cacheDir=path</code>, and used with
+ * {@link Round#cached(Type, Generation)}.
+ * <p>
+ * The files are keyed by a SHA-256 fingerprint of the type: its name, modifiers, annotations incl. the default values
+ * and the JavaDoc, the names of all supertypes, the annotations of the superclasses, and all fields and methods incl.
+ * the inherited ones, with their modifiers, types, parameters, and annotations. It also covers the types referenced
+ * by the fields, parameters, and return types, incl. their type arguments, with the fields and methods they declare.
+ * The fingerprint also covers the processor: its class, the jars or directories it and ExAP were loaded from, and the
+ * processor options. This is conservative, as a generation rarely looks at all of it.
+ * <p>
+ * A generation can navigate further than that, e.g. to the fields of the type of a field of the type of a field. So
+ * the entry also stores the declared types the generation touched, i.e. looked up or read the members of (see
+ * {@link ModelCache}), with a fingerprint of what they declare; it's replayed only if none of them changed.
+ * <p>
+ * Only the generated files are replayed, with the type as their originating element, but not messages like warnings.
+ * A generation that creates no files is not cached, e.g. when it adds its types to a
+ * {@link com.github.t1.exap.generator.GenerationBatch} that is closed only after the generation.
+ * <p>
+ * Replaying an entry marks it as used. Entries that have not been used for {@link #MAX_AGE} are deleted after the
+ * last round, so the cache directory doesn't grow without bound.
+ */
+public class OutputCache {
+    public static final String CACHE_DIR = "exap.cacheDir";
+
+    /** Entries that have not been used for this long are evicted */
+    public static final Duration MAX_AGE = Duration.ofDays(7);
+
+    private static final String FORMAT = "exap-output-cache-2";
+
+    /** The part of a processor that generates the files for one type */
+    @FunctionalInterface
+    public interface Generation {
+        void generate() throws Exception;
+    }
+
+    /** <code>null</code> if the {@link #CACHE_DIR} option is not set */
+    public static OutputCache of(ProcessingEnvironment processingEnv, Class<?> processor) {
+        Map<String, String> options = processingEnv.getOptions();
+        String dir = (options == null) ? null : options.get(CACHE_DIR);
+        if (dir == null || dir.isEmpty())
+            return null;
+        return new OutputCache(Paths.get(dir), processor, processingEnv);
+    }
+
+    private final Path dir;
+    private final byte[] processorFingerprint;
+
+    private int hits;
+    private int misses;
+    private int evicted;
+
+    OutputCache(Path dir, Class<?> processor, ProcessingEnvironment processingEnv) {
+        this.dir = dir.resolve(processor.getName());
+        this.processorFingerprint = processorFingerprint(processor, processingEnv);
+    }
+
+    private static byte[] processorFingerprint(Class<?> processor, ProcessingEnvironment processingEnv) {
+        MessageDigest digest = sha256();
+        update(digest, processor.getName());
+        update(digest, String.valueOf(processingEnv.getSourceVersion()));
+        Map<String, String> options = new TreeMap<>();
+        if (processingEnv.getOptions() != null)
+            options.putAll(processingEnv.getOptions());
+        options.remove(CACHE_DIR);
+        update(digest, options.toString());
+        Path location = location(processor);
+        code(digest, location);
+        Path library = location(OutputCache.class);
+        if (library != null && !library.equals(location))
+            code(digest, library);
+        return digest.digest();
+    }
+
+    /** The content of all files in the jar or directory */
+    private static void code(MessageDigest digest, Path location) {
+        try {
+            if (location != null && Files.isDirectory(location)) {
+                try (Stream<Path> files = Files.walk(location)) {
+                    for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                        update(digest, location.relativize(file).toString());
+                        digest.update(Files.readAllBytes(file));
+                    }
+                }
+            } else if (location != null && Files.isRegularFile(location)) {
+                digest.update(Files.readAllBytes(location));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("can't fingerprint processor code in " + location, e);
+        }
+    }
+
+    /** The jar or directory the class was loaded from; <code>null</code> if unknown */
+    private static Path location(Class<?> type) {
+        CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null)
+            return null;
+        try {
+            return Paths.get(codeSource.getLocation().toURI());
+        } catch (URISyntaxException | FileSystemNotFoundException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Replay the files generated for that type from the cache, or run the generation and store the files it creates */
+    public void generate(Round round, Type type, Generation generation) throws Exception {
+        Logger log = round.log();
+        Path file = dir.resolve(key(type));
+        List<GeneratedFile> cached = read(file, round, log);
+        if (cached != null) {
+            ++hits;
+            log.debug("replay {} for {} from {}", cached, type, file);
+            touch(file, log);
+            for (GeneratedFile generated : cached)
+                round.files().replay(generated, type);
+            return;
+        }
+        ++misses;
+        List<GeneratedFile> generated;
+        Set<String> touched;
+        round.files().startRecording();
+        round.cache().startRecording();
+        try {
+            generation.generate();
+        } finally {
+            touched = round.cache().stopRecording();
+            generated = round.files().stopRecording();
+        }
+        if (generated.isEmpty()) {
+            log.debug("don't cache {}, as it generated no files", type);
+        } else {
+            Map<String, String> fingerprints = new LinkedHashMap<>();
+            for (String name : touched)
+                fingerprints.put(name, touched(round, name));
+            write(file, fingerprints, generated, log);
+        }
+    }
+
+    String key(Type type) {
+        MessageDigest digest = sha256();
+        digest.update(processorFingerprint);
+        new Fingerprint(digest).type(type);
+        return hex(digest.digest());
+    }
+
+    /** The fingerprint of a declared type touched by a generation; empty, if it doesn't exist (any more) */
+    private static String touched(Round round, String name) {
+        TypeElement element = round.cache().elements().getTypeElement(name);
+        if (element == null)
+            return "";
+        MessageDigest digest = sha256();
+        new Fingerprint(digest).declared(Type.of(element.asType(), round));
+        return hex(digest.digest());
+    }
+
+    /** <code>null</code> if there is no entry, or it can't be read, or one of the touched types changed */
+    private static List<GeneratedFile> read(Path file, Round round, Logger log) {
+        if (!Files.isRegularFile(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (!FORMAT.equals(in.readUTF()))
+                throw new IOException("unknown format");
+            int touched = in.readInt();
+            for (int i = 0; i < touched; i++) {
+                String name = in.readUTF();
+                if (!in.readUTF().equals(touched(round, name))) {
+                    log.debug("{} changed since {} was written", name, file);
+                    return null;
+                }
+            }
+            int count = in.readInt();
+            List<GeneratedFile> files = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String pkg = in.readBoolean() ? null : in.readUTF();
+                String name = in.readUTF();
+                byte[] content = new byte[in.readInt()];
+                in.readFully(content);
+                files.add(new GeneratedFile(pkg, name, new String(content, UTF_8)));
+            }
+            return files;
+        } catch (IOException e) {
+            log.warn("can't read output cache file {}: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /** Written to a temporary file first, so concurrent builds sharing the cache only see complete files */
+    private static void write(Path file, Map<String, String> touched, List<GeneratedFile> files, Logger log) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeUTF(FORMAT);
+                out.writeInt(touched.size());
+                for (Map.Entry<String, String> entry : touched.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+                out.writeInt(files.size());
+                for (GeneratedFile generated : files) {
+                    out.writeBoolean(generated.isSource());
+                    if (!generated.isSource())
+                        out.writeUTF(generated.getPkg());
+                    out.writeUTF(generated.getName());
+                    byte[] content = generated.getContent().getBytes(UTF_8);
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+            }
+            try {
+                Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            log.warn("can't write output cache file {}: {}", file, e.toString());
+        }
+    }
+
+    /** Mark the entry as used, so it's not evicted */
+    private static void touch(Path file, Logger log) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.debug("can't touch output cache file {}: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * Delete the entries that have not been used for {@link #MAX_AGE}, and the temporary files left over by builds
+     * that crashed; called after the last round
+     */
+    public void evict(Logger log) {
+        if (!Files.isDirectory(dir))
+            return;
+        FileTime limit = FileTime.from(Instant.now().minus(MAX_AGE));
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(limit) < 0 && Files.deleteIfExists(file))
+                        ++evicted;
+                } catch (IOException e) {
+                    log.debug("can't evict output cache file {}: {}", file, e.toString());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("can't evict from output cache {}: {}", dir, e.toString());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("every JRE has to support SHA-256", e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String text) {
+        digest.update(text.getBytes(UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder out = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            out.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return out.toString();
+    }
+
+    /** The number of types whose files were replayed from the cache */
+    public int getHits() {
+        return hits;
+    }
+
+    /** The number of types that had to be generated */
+    public int getMisses() {
+        return misses;
+    }
+
+    /** The number of entries deleted, as they were not used for {@link #MAX_AGE} */
+    public int getEvicted() {
+        return evicted;
+    }
+
+    @Override
+    public String toString() {
+        return "output cache hits: " + hits + ", misses: " + misses + ", evicted: " + evicted;
+    }
+
+    /** Feeds everything the key of a type depends on into the digest, one line at a time */
+    private static class Fingerprint {
+        private final MessageDigest digest;
+        /** <code>null</code> while the referenced types themselves are fingerprinted, so it's only one level deep */
+        private Map<String, Type> references = new LinkedHashMap<>();
+
+        private Fingerprint(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        private void line(String text) {
+            update(digest, text);
+        }
+
+        private void type(Type type) {
+            line("type " + type.getFullName() + " " + type.modifiers());
+            annotations(type);
+            if (type.isEnum())
+                line("enum " + type.getEnumValues());
+            line("supertypes " + new TreeSet<>(type.getSupertypeNames()));
+            for (Type superType = type.getSuperType(); superType != null; superType = superType.getSuperType()) {
+                line("superclass " + superType.getFullName());
+                annotations(superType);
+            }
+            fields(type.getAllFields());
+            fields(type.getStaticFields());
+            methods(type.getAllMethods());
+            methods(type.getStaticMethods());
+            references();
+        }
+
+        private void references() {
+            Collection<Type> referenced = references.values();
+            references = null;
+            for (Type type : referenced)
+                declared(type);
+        }
+
+        /** Only what the type declares itself, without the types it references */
+        private void declared(Type type) {
+            references = null;
+            line("declared " + type.getFullName() + " " + type.modifiers());
+            annotations(type);
+            if (type.isEnum())
+                line("enum " + type.getEnumValues());
+            line("supertypes " + new TreeSet<>(type.getSupertypeNames()));
+            fields(type.getFields());
+            fields(type.getStaticFields());
+            methods(type.getMethods());
+            methods(type.getStaticMethods());
+        }
+
+        /** Arrays by their element type, and declared types with their type arguments */
+        private void reference(Type type) {
+            if (references == null)
+                return;
+            if (type.isArray()) {
+                reference(type.elementType());
+            } else if (type.isDeclared()) {
+                references.putIfAbsent(type.getFullName(), type);
+                for (Type typeArgument : type.getTypeParameters())
+                    reference(typeArgument);
+            }
+        }
+
+        private void fields(List<Field> fields) {
+            for (Field field : fields) {
+                line("field " + field.getDeclaringType().getFullName() + "#" + field.getName() + " "
+                        + field.modifiers() + " " + field.getType().getFullName());
+                annotations(field);
+                reference(field.getType());
+            }
+        }
+
+        private void methods(List<Method> methods) {
+            for (Method method : methods) {
+                line("method " + method.getDeclaringType().getFullName() + "#" + method.getName() + " "
+                        + method.modifiers() + " " + method.getReturnType().getFullName());
+                annotations(method);
+                reference(method.getReturnType());
+                for (Parameter parameter : method.getParameters()) {
+                    line("parameter " + parameter.getName() + " " + parameter.getType().getFullName());
+                    annotations(parameter);
+                    reference(parameter.getType());
+                }
+            }
+        }
+
+        /** Incl. the JavaDoc, as it's an annotation, too */
+        private void annotations(Elemental elemental) {
+            for (AnnotationWrapper annotation : elemental.getAnnotationWrappers())
+                line(annotation(annotation));
+        }
+
+        /** With the default values, as they are not part of the annotated type */
+        private String annotation(AnnotationWrapper annotation) {
+            StringBuilder out = new StringBuilder("@").append(annotation.getAnnotationType().getFullName()).append("(");
+            String delimiter = "";
+            for (Method property : annotation.getAnnotationType().getMethods()) {
+                out.append(delimiter).append(property.getName()).append("=")
+                        .append(value(annotation.getProperty(property.getName())));
+                delimiter = ", ";
+            }
+            return out.append(")").toString();
+        }
+
+        private String value(Object value) {
+            if (value instanceof AnnotationValue)
+                return value(((AnnotationValue) value).getValue());
+            if (value instanceof AnnotationWrapper)
+                return annotation((AnnotationWrapper) value);
+            if (value instanceof Type)
+                return ((Type) value).getFullName();
+            if (value instanceof List) {
+                StringJoiner out = new StringJoiner(", ", "{", "}");
+                for (Object element : (List<?>) value)
+                    out.add(value(element));
+                return out.toString();
+            }
+            if (value != null && value.getClass().isArray()) {
+                StringJoiner out = new StringJoiner(", ", "{", "}");
+                for (int i = 0; i < Array.getLength(value); i++)
+                    out.add(value(Array.get(value, i)));
+                return out.toString();
+            }
+            return String.valueOf(value);
+        }
+    }
+}
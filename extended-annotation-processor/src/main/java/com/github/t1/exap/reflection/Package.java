@@ -1,23 +1,23 @@
 package com.github.t1.exap.reflection;
 
-import static javax.tools.StandardLocation.*;
-
 import java.io.IOException;
 
-import javax.annotation.processing.Filer;
 import javax.lang.model.element.*;
 
 import com.github.t1.exap.Round;
-import com.github.t1.exap.generator.TypeGenerator;
+import com.github.t1.exap.generator.*;
 
 public class Package extends Elemental {
     private final PackageElement packageElement;
-    private Round round;
 
     public Package(PackageElement packageElement, Round round) {
         super(round);
         this.packageElement = packageElement;
-        this.round = round;
+    }
+
+    /** Detached from the round, for the {@link Snapshot}s */
+    Package(PackageElement packageElement) {
+        this.packageElement = packageElement;
     }
 
     @Override
@@ -34,9 +34,13 @@ public class Package extends Elemental {
     }
 
     public Resource createSource(String relativeName) {
+        return createSource(relativeName, new Elemental[0]);
+    }
+
+    /** @param originatingElements the elements the source is generated from, for incremental builds */
+    public Resource createSource(String relativeName, Elemental... originatingElements) {
         try {
-            String sourceName = sourceName(relativeName);
-            return new Resource(filer().createSourceFile(sourceName));
+            return round().files().createSource(sourceName(relativeName), originatingElements);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -50,21 +54,26 @@ public class Package extends Elemental {
         return sourceName;
     }
 
-    @SuppressWarnings("deprecation")
-    private Filer filer() {
-        return round.env().getFiler();
+    public Resource createResource(String relativeName) {
+        return createResource(relativeName, new Elemental[0]);
     }
 
-    public Resource createResource(String relativeName) {
+    /** @param originatingElements the elements the resource is generated from, for incremental builds */
+    public Resource createResource(String relativeName, Elemental... originatingElements) {
         try {
-            return new Resource(filer().createResource(CLASS_OUTPUT, getName(), relativeName));
+            return round().files().createResource(getName(), relativeName, originatingElements);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     public TypeGenerator openTypeGenerator(String name) {
-        return new TypeGenerator(round.log(), this, name);
+        return new TypeGenerator(log(), this, name);
+    }
+
+    /** The type is rendered and written when the batch is closed */
+    public TypeGenerator openTypeGenerator(String name, GenerationBatch batch) {
+        return batch.openTypeGenerator(this, name);
     }
 
     @Override
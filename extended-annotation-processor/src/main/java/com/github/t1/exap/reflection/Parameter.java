@@ -2,11 +2,25 @@ package com.github.t1.exap.reflection;
 
 import static java.util.Objects.*;
 
-import javax.lang.model.element.VariableElement;
+import java.util.Optional;
+
+import javax.lang.model.element.*;
+
+import com.github.t1.exap.*;
 
 public class Parameter extends Elemental {
+    /** The same element always results in the same instance within a {@link Round} */
+    public static Parameter of(VariableElement param, Round round) {
+        Method method = Method.of((ExecutableElement) param.getEnclosingElement(), round);
+        for (Parameter parameter : method.getParameters())
+            if (parameter.param == param)
+                return parameter;
+        throw new IllegalArgumentException("no parameter " + param.getSimpleName() + " in " + method);
+    }
+
     private final VariableElement param;
     private final Method method;
+    private Optional<JavaDocModel> paramJavaDoc;
 
     public Parameter(Method method, VariableElement param) {
         super(method.round());
@@ -14,6 +28,12 @@ public class Parameter extends Elemental {
         this.param = requireNonNull(param);
     }
 
+    /** Detached from the round, for the {@link Snapshot}s */
+    Parameter(Method method) {
+        this.method = requireNonNull(method);
+        this.param = DummyProxy.of(VariableElement.class);
+    }
+
     @Override
     protected VariableElement getElement() {
         return param;
@@ -27,6 +47,20 @@ public class Parameter extends Elemental {
         return param.getSimpleName().toString();
     }
 
+    /** Falls back to the <code>@param</code> tag in the JavaDoc of the method */
+    @Override
+    public JavaDocModel getJavaDoc() {
+        JavaDocModel javaDoc = super.getJavaDoc();
+        if (javaDoc != null)
+            return javaDoc;
+        if (paramJavaDoc == null) {
+            JavaDocModel methodJavaDoc = method.getJavaDoc();
+            String param = (methodJavaDoc == null) ? null : methodJavaDoc.getParam(getName());
+            paramJavaDoc = Optional.ofNullable((param == null) ? null : new JavaDocModel(param));
+        }
+        return paramJavaDoc.orElse(null);
+    }
+
     public Type getType() {
         return Type.of(param.asType(), round());
     }
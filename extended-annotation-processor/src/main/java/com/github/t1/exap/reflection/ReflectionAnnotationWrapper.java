@@ -73,6 +73,7 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
     }
 
     private final Annotation annotation;
+    private final Map<String, Object> values = new HashMap<>();
 
     ReflectionAnnotationWrapper(Annotation annotation, Round round) {
         super(DummyProxy.of(AnnotationMirror.class), round);
@@ -155,24 +156,40 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
         return list;
     }
 
+    /** Arrays are copied, as the values are cached */
     @Override
     public Object getProperty(String name) {
-        try {
-            Method method = annotation.annotationType().getMethod(name);
-            return invoke(method);
-        } catch (NoSuchMethodException | SecurityException e) {
-            throw new RuntimeException(e);
+        Object value = value(name);
+        if (!value.getClass().isArray())
+            return value;
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+
+    /** Invoked only once per property; arrays must not be passed on */
+    private Object value(String name) {
+        Object value = values.get(name);
+        if (value == null) {
+            try {
+                value = invoke(annotation.annotationType().getMethod(name));
+            } catch (NoSuchMethodException | SecurityException e) {
+                throw new RuntimeException(e);
+            }
+            values.put(name, value);
         }
+        return value;
     }
 
     @Override
     public boolean isArrayProperty(String name) {
-        return getProperty(name).getClass().isArray();
+        return value(name).getClass().isArray();
     }
 
     @Override
     public AnnotationPropertyType getPropertyType(String name) {
-        Object value = getProperty(name);
+        Object value = value(name);
         Class<?> type = value.getClass();
         if (type.isArray())
             type = type.getComponentType();
@@ -191,7 +208,7 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
 
     @Override
     protected Object getSingleArrayProperty(String name) {
-        Object value = getProperty(name);
+        Object value = value(name);
         if (Array.getLength(value) != 1)
             throw new IllegalArgumentException(
                     "expected annotation property array to contain exactly one element but found "
@@ -199,6 +216,60 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
         return Array.get(value, 0);
     }
 
+    @Override
+    public boolean[] getBooleanArrayProperty(String name) {
+        return (boolean[]) arrayProperty(name, boolean.class);
+    }
+
+    @Override
+    public byte[] getByteArrayProperty(String name) {
+        return (byte[]) arrayProperty(name, byte.class);
+    }
+
+    @Override
+    public char[] getCharArrayProperty(String name) {
+        return (char[]) arrayProperty(name, char.class);
+    }
+
+    @Override
+    public short[] getShortArrayProperty(String name) {
+        return (short[]) arrayProperty(name, short.class);
+    }
+
+    @Override
+    public int[] getIntArrayProperty(String name) {
+        return (int[]) arrayProperty(name, int.class);
+    }
+
+    @Override
+    public long[] getLongArrayProperty(String name) {
+        return (long[]) arrayProperty(name, long.class);
+    }
+
+    @Override
+    public float[] getFloatArrayProperty(String name) {
+        return (float[]) arrayProperty(name, float.class);
+    }
+
+    @Override
+    public double[] getDoubleArrayProperty(String name) {
+        return (double[]) arrayProperty(name, double.class);
+    }
+
+    /** A copy of the array value, as the value is cached; or a new array with a non-array value as the only element */
+    private Object arrayProperty(String name, Class<?> componentType) {
+        Object value = value(name);
+        if (!value.getClass().isArray()) {
+            Object array = Array.newInstance(componentType, 1);
+            Array.set(array, 0, value);
+            return array;
+        }
+        int length = Array.getLength(value);
+        Object array = Array.newInstance(componentType, length);
+        System.arraycopy(value, 0, array, 0, length);
+        return array;
+    }
+
     @Override
     public String getEnumProperty(String name) {
         Enum<?> e = (Enum<?>) getSingleProperty(name);
@@ -207,7 +278,7 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
 
     @Override
     public List<String> getEnumProperties(String name) {
-        Object value = getProperty(name);
+        Object value = value(name);
         List<String> list = new ArrayList<>();
         if (value instanceof Enum)
             list.add(((Enum<?>) value).name());
@@ -228,7 +299,7 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
 
     @Override
     public List<Type> getTypeProperties(String name) {
-        Object value = getProperty(name);
+        Object value = value(name);
         if (value instanceof Class)
             return singletonList(type((Class<?>) value));
         List<Type> list = new ArrayList<>();
@@ -246,7 +317,7 @@ class ReflectionAnnotationWrapper extends AnnotationWrapper {
 
     @Override
     public List<AnnotationWrapper> getAnnotationProperties(String name) {
-        Object value = getProperty(name);
+        Object value = value(name);
         if (value instanceof Annotation)
             return singletonList(new ReflectionAnnotationWrapper((Annotation) value, round()));
         List<AnnotationWrapper> list = new ArrayList<>();
@@ -29,6 +29,11 @@ class ReflectionField extends Field {
         return ReflectionType.type(field.getGenericType(), round());
     }
 
+    @Override
+    public List<Type> getTypeParameters() {
+        return getType().getTypeParameters();
+    }
+
     @Override
     protected boolean is(Modifier modifier) {
         return Modifiers.on(field.getModifiers()).is(modifier);
@@ -4,8 +4,7 @@ import static com.github.t1.exap.reflection.ReflectionProcessingEnvironment.*;
 import static java.util.Arrays.*;
 
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import javax.lang.model.element.*;
 import javax.tools.Diagnostic;
@@ -15,6 +14,7 @@ import com.github.t1.exap.Round;
 class ReflectionMethod extends Method {
     private final java.lang.reflect.Method method;
     private List<Parameter> parameters;
+    private final Map<Class<?>, List<AnnotationWrapper>> hierarchyAnnotations = new HashMap<>();
 
     public ReflectionMethod(Type declaringType, java.lang.reflect.Method method, Round round) {
         super(declaringType, DummyProxy.of(ExecutableElement.class), round);
@@ -41,6 +41,30 @@ class ReflectionMethod extends Method {
         return ReflectionAnnotationWrapper.ofTypeOn(method, type, round());
     }
 
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> findAnnotationWrappers(Class<T> type) {
+        List<AnnotationWrapper> result = hierarchyAnnotations.get(type);
+        if (result == null) {
+            result = overriddenAnnotations(type);
+            hierarchyAnnotations.put(type, result);
+        }
+        return result;
+    }
+
+    private <T extends Annotation> List<AnnotationWrapper> overriddenAnnotations(Class<T> type) {
+        List<AnnotationWrapper> own = getAnnotationWrappers(type);
+        if (!own.isEmpty())
+            return own;
+        for (Type supertype : ((ReflectionType) getDeclaringType()).directSupertypes())
+            for (Method candidate : supertype.getAllMethods())
+                if (overrides((ReflectionMethod) candidate)) {
+                    List<AnnotationWrapper> result = candidate.findAnnotationWrappers(type);
+                    if (!result.isEmpty())
+                        return result;
+                }
+        return Collections.emptyList();
+    }
+
     @Override
     public List<Parameter> getParameters() {
         if (parameters == null) {
@@ -61,6 +85,13 @@ class ReflectionMethod extends Method {
         return ReflectionType.type(method.getGenericReturnType(), round());
     }
 
+    /** Same name and parameter types, and the other is not private */
+    boolean overrides(ReflectionMethod that) {
+        return this.method.getName().equals(that.method.getName())
+                && Arrays.equals(this.method.getParameterTypes(), that.method.getParameterTypes())
+                && !java.lang.reflect.Modifier.isPrivate(that.method.getModifiers());
+    }
+
     @Override
     protected boolean is(Modifier modifier) {
         return Modifiers.on(method.getModifiers()).is(modifier);
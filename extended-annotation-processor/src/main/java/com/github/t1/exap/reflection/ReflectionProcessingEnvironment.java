@@ -26,7 +26,7 @@ public class ReflectionProcessingEnvironment implements ProcessingEnvironment {
 
     @Override
     public Map<String, String> getOptions() {
-        return null;
+        return Collections.emptyMap();
     }
 
     @Override
@@ -4,11 +4,13 @@ import static com.github.t1.exap.reflection.ReflectionProcessingEnvironment.*;
 import static java.util.Arrays.*;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.*;
 import java.util.*;
 import java.util.ArrayList;
+import java.util.stream.Stream;
 
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
 
@@ -31,12 +33,22 @@ class ReflectionType extends Type {
     private List<Method> staticMethods = null;
     private List<Field> fields = null;
     private List<Field> staticFields = null;
+    private List<Method> allMethods = null;
+    private List<Field> allFields = null;
+    private Set<String> supertypeNames = null;
+    private final Map<Class<?>, List<AnnotationWrapper>> hierarchyAnnotations = new HashMap<>();
 
     private ReflectionType(java.lang.reflect.Type type, Round round) {
         super(DummyProxy.of(TypeMirror.class), round);
         this.type = type;
     }
 
+    /** There is no element in reflection */
+    @Override
+    protected TypeElement getElement() {
+        return null;
+    }
+
     @Override
     public Package getPackage() {
         return new ReflectionPackage(rawType().getPackage(), round());
@@ -51,7 +63,22 @@ class ReflectionType extends Type {
     }
 
     private Class<?> rawType() {
-        return isClass() ? asClass() : (Class<?>) asParameterizedType().getRawType();
+        return erasure(type);
+    }
+
+    /** Type variables and wildcards are erased to their (first upper) bound */
+    private static Class<?> erasure(java.lang.reflect.Type type) {
+        if (type instanceof Class)
+            return (Class<?>) type;
+        if (type instanceof ParameterizedType)
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        if (type instanceof TypeVariable)
+            return erasure(((TypeVariable<?>) type).getBounds()[0]);
+        if (type instanceof WildcardType)
+            return erasure(((WildcardType) type).getUpperBounds()[0]);
+        if (type instanceof GenericArrayType)
+            return Array.newInstance(erasure(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        throw new UnsupportedOperationException("unsupported reflection type " + type.getClass().getName());
     }
 
     private boolean isParameterizedType() {
@@ -62,6 +89,11 @@ class ReflectionType extends Type {
         return (ParameterizedType) this.type;
     }
 
+    @Override
+    boolean isDeclared() {
+        return isParameterizedType() || (isClass() && !asClass().isPrimitive() && !asClass().isArray());
+    }
+
     @Override
     protected boolean is(Modifier modifier) {
         return Modifiers.on(rawType().getModifiers()).is(modifier);
@@ -93,47 +125,37 @@ class ReflectionType extends Type {
     }
 
     @Override
-    public boolean isVoid() {
-        return void.class.equals(type) || Void.class.equals(type);
-    }
-
-    @Override
-    public boolean isPrimitive() {
-        return rawType().isPrimitive();
-    }
-
-    @Override
-    public boolean isBoolean() {
-        return boolean.class.equals(type) || Boolean.class.equals(type);
-    }
-
-    @Override
-    public boolean isCharacter() {
-        return char.class.equals(type) || Character.class.equals(type);
-    }
-
-    @Override
-    public boolean isFloating() {
-        return float.class.equals(type) || Float.class.equals(type) //
-                || double.class.equals(type) || Double.class.equals(type);
-    }
-
-    @Override
-    public boolean isInteger() {
-        return byte.class.equals(type) || Byte.class.equals(type) //
+    protected int classify() {
+        if (void.class.equals(type) || Void.class.equals(type))
+            return IS_VOID;
+        if (boolean.class.equals(type) || Boolean.class.equals(type))
+            return primitive() | IS_BOOLEAN;
+        if (char.class.equals(type) || Character.class.equals(type))
+            return primitive() | IS_CHARACTER;
+        if (byte.class.equals(type) || Byte.class.equals(type) //
                 || short.class.equals(type) || Short.class.equals(type) //
                 || int.class.equals(type) || Integer.class.equals(type) //
-                || long.class.equals(type) || Long.class.equals(type);
-    }
-
-    @Override
-    public boolean isString() {
-        return String.class.equals(type);
-    }
-
-    @Override
-    public boolean isEnum() {
-        return isClass() && asClass().isEnum();
+                || long.class.equals(type) || Long.class.equals(type))
+            return primitive() | IS_INTEGER;
+        if (float.class.equals(type) || Float.class.equals(type) //
+                || double.class.equals(type) || Double.class.equals(type))
+            return primitive() | IS_FLOATING;
+        if (String.class.equals(type))
+            return IS_STRING;
+        int bits = 0;
+        if (isClass() && asClass().isEnum())
+            bits |= IS_ENUM;
+        if (rawType().isArray())
+            bits |= IS_ARRAY;
+        if (Collection.class.isAssignableFrom(rawType()))
+            bits |= IS_COLLECTION;
+        if (Map.class.isAssignableFrom(rawType()))
+            bits |= IS_MAP;
+        return bits;
+    }
+
+    private int primitive() {
+        return rawType().isPrimitive() ? IS_PRIMITIVE : 0;
     }
 
     @Override
@@ -146,23 +168,43 @@ class ReflectionType extends Type {
         return list;
     }
 
-    @Override
-    public boolean isArray() {
-        return rawType().isArray();
-    }
-
     @Override
     public Type elementType() {
+        if (type instanceof GenericArrayType)
+            return ReflectionType.type(((GenericArrayType) type).getGenericComponentType(), round());
         if (isArray())
-            return ReflectionType.type(asClass().getComponentType(), round());
+            return ReflectionType.type(rawType().getComponentType(), round());
         return null;
     }
 
+    @Override
+    public Stream<String> enumValues() {
+        return isEnum() ? getEnumValues().stream() : Stream.empty();
+    }
+
     @Override
     public boolean isA(Class<?> thatClass) {
         return thatClass.isAssignableFrom(rawType());
     }
 
+    @Override
+    public Set<String> getSupertypeNames() {
+        if (supertypeNames == null) {
+            Set<String> names = new HashSet<>();
+            addSupertypeNames(names, rawType());
+            supertypeNames = Collections.unmodifiableSet(names);
+        }
+        return supertypeNames;
+    }
+
+    private void addSupertypeNames(Set<String> names, Class<?> type) {
+        if (type == null || !names.add((type.getCanonicalName() == null) ? type.getName() : type.getCanonicalName()))
+            return;
+        addSupertypeNames(names, type.getSuperclass());
+        for (Class<?> anInterface : type.getInterfaces())
+            addSupertypeNames(names, anInterface);
+    }
+
     @Override
     public List<Type> getTypeParameters() {
         List<Type> list = new ArrayList<>();
@@ -172,6 +214,52 @@ class ReflectionType extends Type {
         return list;
     }
 
+    /** The superclass (if any) and the interfaces */
+    List<Type> directSupertypes() {
+        List<Type> supertypes = new ArrayList<>();
+        if (getSuperType() != null)
+            supertypes.add(getSuperType());
+        for (Class<?> anInterface : rawType().getInterfaces())
+            supertypes.add(ReflectionType.type(anInterface, round()));
+        return supertypes;
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> findAnnotationWrappers(Class<T> type) {
+        List<AnnotationWrapper> result = hierarchyAnnotations.get(type);
+        if (result == null) {
+            result = getAnnotationWrappers(type);
+            if (result.isEmpty())
+                for (Type supertype : directSupertypes()) {
+                    result = supertype.findAnnotationWrappers(type);
+                    if (!result.isEmpty())
+                        break;
+                }
+            hierarchyAnnotations.put(type, result);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Method> getAllMethods() {
+        if (allMethods == null) {
+            List<Method> list = new ArrayList<>(getMethods());
+            for (Type supertype : directSupertypes())
+                for (Method inherited : supertype.getAllMethods())
+                    if (!list.contains(inherited) && !isOverridden((ReflectionMethod) inherited, list))
+                        list.add(inherited);
+            allMethods = list;
+        }
+        return allMethods;
+    }
+
+    private boolean isOverridden(ReflectionMethod method, List<Method> candidates) {
+        for (Method candidate : candidates)
+            if (((ReflectionMethod) candidate).overrides(method))
+                return true;
+        return false;
+    }
+
     @Override
     public List<Method> getMethods() {
         if (methods == null)
@@ -186,6 +274,16 @@ class ReflectionType extends Type {
         return staticMethods;
     }
 
+    @Override
+    public Stream<Method> methods() {
+        return getMethods().stream();
+    }
+
+    @Override
+    public Stream<Method> staticMethods() {
+        return getStaticMethods().stream();
+    }
+
     private List<Method> getMethods(boolean isStatic) {
         List<Method> methods = new ArrayList<>();
         for (java.lang.reflect.Method method : rawType().getDeclaredMethods())
@@ -194,6 +292,29 @@ class ReflectionType extends Type {
         return methods;
     }
 
+    @Override
+    public List<Field> getAllFields() {
+        if (allFields == null) {
+            List<Field> list = new ArrayList<>(getFields());
+            if (getSuperType() != null)
+                for (Field inherited : getSuperType().getAllFields())
+                    if (!isHidden(inherited, list))
+                        list.add(inherited);
+            allFields = list;
+        }
+        return allFields;
+    }
+
+    /** Private fields are not inherited, so they can't be hidden */
+    private boolean isHidden(Field field, List<Field> candidates) {
+        if (field.is(Modifier.PRIVATE))
+            return false;
+        for (Field candidate : candidates)
+            if (candidate.getName().equals(field.getName()))
+                return true;
+        return false;
+    }
+
     @Override
     public List<Field> getFields() {
         if (fields == null)
@@ -208,6 +329,16 @@ class ReflectionType extends Type {
         return staticFields;
     }
 
+    @Override
+    public Stream<Field> fields() {
+        return getFields().stream();
+    }
+
+    @Override
+    public Stream<Field> staticFields() {
+        return getStaticFields().stream();
+    }
+
     private List<Field> getFields(boolean isStatic) {
         List<Field> fields = new ArrayList<>();
         for (java.lang.reflect.Field field : rawType().getDeclaredFields())
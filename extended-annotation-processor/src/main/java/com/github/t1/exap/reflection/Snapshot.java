@@ -0,0 +1,307 @@
+package com.github.t1.exap.reflection;
+
+import static com.github.t1.exap.reflection.AnnotationPropertyType.*;
+import static java.util.Collections.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.lang.model.element.Modifier;
+
+import com.github.t1.exap.JavaDocModel;
+
+/**
+ * An immutable copy of the model of some types, detached from the compiler, so it can be used by other threads, e.g.
+ * to run an expensive analysis or generation on all cores. It implements the same API as the compiler model, i.e.
+ * the same {@link Type}, {@link Method}, {@link Field}, {@link Parameter}, and {@link AnnotationWrapper} classes.
+ * <p>
+ * The types are copied completely: names, modifiers, annotations with all property values, type arguments, JavaDoc,
+ * and the methods and fields with theirs. The types they reference, e.g. the types of the fields, the supertypes, or
+ * the annotation types, are copied without their members.
+ * <p>
+ * A snapshot has to be created on the processor thread and handed over to other threads safely, e.g. through an
+ * {@link java.util.concurrent.ExecutorService} or a parallel stream. Messages, e.g.
+ * {@link Elemental#error(CharSequence)}, are queued and only printed by {@link #printMessages()}, which has to be
+ * called on the processor thread again. The things that need the compiler are not supported, e.g.
+ * {@link Type#findAnnotationWrappers(Class)}, or creating files in a {@link Package}: the snapshot elements are
+ * detached from the {@link Elemental#round() round}.
+ */
+public class Snapshot {
+    /** Must be called on the processor thread */
+    public static Snapshot of(Collection<? extends Type> types) {
+        return new Snapshot(types);
+    }
+
+    private final AnnotationTypeCache annotationTypes = new AnnotationTypeCache();
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+    private final List<Type> types;
+
+    private Snapshot(Collection<? extends Type> types) {
+        this.types = unmodifiableList(new Extraction(this, types).types());
+    }
+
+    /** The snapshots of the types, in the order they were passed in */
+    public List<Type> getTypes() {
+        return types;
+    }
+
+    AnnotationTypeCache annotationTypes() {
+        return annotationTypes;
+    }
+
+    void queue(Message message) {
+        messages.add(message);
+    }
+
+    /** Print the messages queued by the snapshot elements; must be called on the processor thread */
+    public void printMessages() {
+        Message message;
+        while ((message = messages.poll()) != null)
+            message.getElemental().message(message.getKind(), message.getText());
+    }
+
+    @Override
+    public String toString() {
+        return "Snapshot" + types;
+    }
+
+    /** Copies the model; the types are registered before they are filled, so cyclic references work */
+    private static class Extraction {
+        private final Snapshot snapshot;
+        private final Set<Type> selected;
+        private final Map<Type, SnapshotType> types = new HashMap<>();
+        private final Map<Method, SnapshotMethod> methods = new IdentityHashMap<>();
+        private final Map<Field, SnapshotField> fields = new IdentityHashMap<>();
+        private final List<Type> result = new ArrayList<>();
+
+        private Extraction(Snapshot snapshot, Collection<? extends Type> selected) {
+            this.snapshot = snapshot;
+            this.selected = new HashSet<>(selected);
+            for (Type type : selected)
+                result.add(type(type));
+        }
+
+        private List<Type> types() {
+            return result;
+        }
+
+        private Type type(Type source) {
+            if (source == null || source instanceof SnapshotType)
+                return source;
+            SnapshotType type = types.get(source);
+            if (type == null) {
+                boolean declared = source.isDeclared();
+                SnapshotElement element = element(source, declared);
+                type = new SnapshotType(element, source, classification(source));
+                types.put(source, type);
+
+                List<Type> typeParameters = new ArrayList<>();
+                for (Type typeParameter : source.getTypeParameters())
+                    typeParameters.add(type(typeParameter));
+                type.references(type(source.elementType()), declared ? type(source.getSuperType()) : null,
+                        typeParameters);
+                if (declared)
+                    annotations(element, source);
+                if (selected.contains(source))
+                    members(type, source);
+                type.isVoid(); // the classification is cached lazily
+            }
+            return type;
+        }
+
+        private static int classification(Type type) {
+            int bits = 0;
+            if (type.isVoid())
+                bits |= Type.IS_VOID;
+            if (type.isPrimitive())
+                bits |= Type.IS_PRIMITIVE;
+            if (type.isBoolean())
+                bits |= Type.IS_BOOLEAN;
+            if (type.isCharacter())
+                bits |= Type.IS_CHARACTER;
+            if (type.isInteger())
+                bits |= Type.IS_INTEGER;
+            if (type.isFloating())
+                bits |= Type.IS_FLOATING;
+            if (type.isString())
+                bits |= Type.IS_STRING;
+            if (type.isEnum())
+                bits |= Type.IS_ENUM;
+            if (type.isArray())
+                bits |= Type.IS_ARRAY;
+            if (type.isCollection())
+                bits |= Type.IS_COLLECTION;
+            if (type.isMap())
+                bits |= Type.IS_MAP;
+            return bits;
+        }
+
+        private void members(SnapshotType type, Type source) {
+            type.members(methods(source.getMethods()), methods(source.getStaticMethods()),
+                    methods(source.getAllMethods()), fields(source.getFields()), fields(source.getStaticFields()),
+                    fields(source.getAllFields()));
+            type.hasMethod(""); // the methods and fields by name are indexed lazily
+            type.hasField("");
+        }
+
+        private List<Method> methods(List<Method> sources) {
+            List<Method> list = new ArrayList<>();
+            for (Method source : sources)
+                list.add(method(source));
+            return list;
+        }
+
+        private Method method(Method source) {
+            SnapshotMethod method = methods.get(source);
+            if (method == null) {
+                SnapshotElement element = element(source, true);
+                method = new SnapshotMethod(element, type(source.getDeclaringType()), source);
+                methods.put(source, method);
+                List<Parameter> parameters = new ArrayList<>();
+                for (Parameter parameter : source.getParameters())
+                    parameters.add(parameter(method, parameter));
+                method.signature(type(source.getReturnType()), parameters);
+                annotations(element, source);
+            }
+            return method;
+        }
+
+        private Parameter parameter(SnapshotMethod method, Parameter source) {
+            SnapshotElement element = element(source, true);
+            SnapshotParameter parameter = new SnapshotParameter(element, method, source);
+            parameter.type(type(source.getType()));
+            annotations(element, source);
+            return parameter;
+        }
+
+        private List<Field> fields(List<Field> sources) {
+            List<Field> list = new ArrayList<>();
+            for (Field source : sources)
+                list.add(field(source));
+            return list;
+        }
+
+        private Field field(Field source) {
+            SnapshotField field = fields.get(source);
+            if (field == null) {
+                SnapshotElement element = element(source, true);
+                field = new SnapshotField(element, type(source.getDeclaringType()), source);
+                fields.put(source, field);
+                List<Type> typeParameters = new ArrayList<>();
+                for (Type typeParameter : source.getTypeParameters())
+                    typeParameters.add(type(typeParameter));
+                field.type(type(source.getType()), typeParameters);
+                annotations(element, source);
+            }
+            return field;
+        }
+
+        private SnapshotElement element(Elemental source, boolean hasModifiers) {
+            Set<Modifier> modifiers = hasModifiers ? source.modifiers() : EnumSet.noneOf(Modifier.class);
+            return new SnapshotElement(snapshot, source, unmodifiableSet(modifiers));
+        }
+
+        private void annotations(SnapshotElement element, Elemental source) {
+            List<AnnotationWrapper> annotations = new ArrayList<>();
+            for (AnnotationWrapper annotation : source.getAnnotationWrappers())
+                annotations.add(annotation(annotation));
+            element.annotations(annotations, parsed(source.getJavaDoc()));
+        }
+
+        /** The JavaDoc model parses lazily, so it has to be done before it's shared */
+        private static JavaDocModel parsed(JavaDocModel javaDoc) {
+            if (javaDoc != null) {
+                javaDoc.getSummary();
+                javaDoc.getBlockTags();
+                javaDoc.getInlineTags();
+            }
+            return javaDoc;
+        }
+
+        private AnnotationWrapper annotation(AnnotationWrapper source) {
+            Type annotationType = type(source.getAnnotationType());
+            SnapshotAnnotationWrapper annotation = new SnapshotAnnotationWrapper(snapshot, source, annotationType);
+            Map<String, AnnotationPropertyType> propertyTypes = new HashMap<>();
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (Method property : source.getAnnotationType().getMethods()) {
+                String name = property.getName();
+                Type returnType = property.getReturnType();
+                boolean array = returnType.isArray();
+                AnnotationPropertyType propertyType = propertyType(array ? returnType.elementType() : returnType);
+                propertyTypes.put(name, propertyType);
+                values.put(name, value(source, name, propertyType, array));
+            }
+            annotation.values(propertyTypes, values);
+            return annotation;
+        }
+
+        private static AnnotationPropertyType propertyType(Type type) {
+            switch (type.getFullName()) {
+            case "boolean":
+                return BOOLEAN;
+            case "byte":
+                return BYTE;
+            case "char":
+                return CHAR;
+            case "short":
+                return SHORT;
+            case "int":
+                return INT;
+            case "long":
+                return LONG;
+            case "float":
+                return FLOAT;
+            case "double":
+                return DOUBLE;
+            case "java.lang.String":
+                return STRING;
+            }
+            if (type.isEnum())
+                return ENUM;
+            if (type.getFullName().startsWith("java.lang.Class"))
+                return CLASS;
+            return ANNOTATION;
+        }
+
+        private Object value(AnnotationWrapper source, String name, AnnotationPropertyType type, boolean array) {
+            switch (type) {
+            case BOOLEAN:
+                return array ? source.getBooleanArrayProperty(name) : source.getBooleanProperty(name);
+            case BYTE:
+                return array ? source.getByteArrayProperty(name) : source.getByteProperty(name);
+            case CHAR:
+                return array ? source.getCharArrayProperty(name) : source.getCharProperty(name);
+            case SHORT:
+                return array ? source.getShortArrayProperty(name) : source.getShortProperty(name);
+            case INT:
+                return array ? source.getIntArrayProperty(name) : source.getIntProperty(name);
+            case LONG:
+                return array ? source.getLongArrayProperty(name) : source.getLongProperty(name);
+            case FLOAT:
+                return array ? source.getFloatArrayProperty(name) : source.getFloatProperty(name);
+            case DOUBLE:
+                return array ? source.getDoubleArrayProperty(name) : source.getDoubleProperty(name);
+            case STRING:
+                return array ? source.getStringProperties(name).toArray(new String[0]) : source.getStringProperty(name);
+            case ENUM:
+                return array ? source.getEnumProperties(name).toArray(new String[0]) : source.getEnumProperty(name);
+            case CLASS:
+                if (!array)
+                    return type(source.getTypeProperty(name));
+                List<Type> types = new ArrayList<>();
+                for (Type value : source.getTypeProperties(name))
+                    types.add(type(value));
+                return types.toArray(new Type[0]);
+            case ANNOTATION:
+                if (!array)
+                    return annotation(source.getAnnotationProperty(name));
+                List<AnnotationWrapper> annotations = new ArrayList<>();
+                for (AnnotationWrapper value : source.getAnnotationProperties(name))
+                    annotations.add(annotation(value));
+                return annotations.toArray(new AnnotationWrapper[0]);
+            default:
+                throw new AssertionError("unexpected property type " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.tools.Diagnostic;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.JavaDocModel;
+
+/**
+ * All property values incl. the defaults. Like the {@link ReflectionAnnotationWrapper}, array values are stored as
+ * arrays: primitive arrays, or arrays of Strings (also for the names of enum values), {@link Type}s, or
+ * {@link AnnotationWrapper}s.
+ */
+class SnapshotAnnotationWrapper extends AnnotationWrapper {
+    private final Snapshot snapshot;
+    private final AnnotationWrapper source;
+    private final Type annotationType;
+    private final boolean repeatable;
+    private final List<String> propertyNames;
+    private final String string;
+    private final Logger log;
+    private Map<String, AnnotationPropertyType> propertyTypes = emptyMap();
+    private Map<String, Object> values = emptyMap();
+    private Map<String, Object> propertyMap = emptyMap();
+
+    SnapshotAnnotationWrapper(Snapshot snapshot, AnnotationWrapper source, Type annotationType) {
+        super(DummyProxy.of(AnnotationMirror.class));
+        this.snapshot = snapshot;
+        this.source = source;
+        this.annotationType = annotationType;
+        this.repeatable = source.isRepeatable();
+        this.propertyNames = unmodifiableList(new ArrayList<>(source.getPropertyNames()));
+        this.string = source.toString();
+        this.log = source.log();
+    }
+
+    void values(Map<String, AnnotationPropertyType> propertyTypes, Map<String, Object> values) {
+        this.propertyTypes = unmodifiableMap(propertyTypes);
+        this.values = unmodifiableMap(values);
+        Map<String, Object> propertyMap = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            propertyMap.put(entry.getKey(), isArray(value) ? arrayToList(value) : value);
+        }
+        this.propertyMap = unmodifiableMap(propertyMap);
+    }
+
+    private static boolean isArray(Object value) {
+        return value.getClass().isArray();
+    }
+
+    private static List<Object> arrayToList(Object array) {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < Array.getLength(array); i++)
+            list.add(Array.get(array, i));
+        return unmodifiableList(list);
+    }
+
+    @Override
+    protected Element getElement() {
+        return null;
+    }
+
+    @Override
+    public Logger log() {
+        return log;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return repeatable;
+    }
+
+    @Override
+    public boolean isArrayProperty(String name) {
+        return isArray(getProperty(name));
+    }
+
+    @Override
+    public AnnotationPropertyType getPropertyType(String name) {
+        getProperty(name); // fail for unknown properties
+        return propertyTypes.get(name);
+    }
+
+    @Override
+    public Type getAnnotationType() {
+        return annotationType;
+    }
+
+    @Override
+    public List<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    /** All properties incl. the defaults; arrays as lists */
+    @Override
+    public Map<String, Object> getPropertyMap() {
+        return propertyMap;
+    }
+
+    /** Arrays are copied, so the snapshot stays immutable */
+    @Override
+    public Object getProperty(String name) {
+        Object value = values.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("no property \"" + name + "\" found in annotation " + string);
+        if (isArray(value)) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            value = copy;
+        }
+        return value;
+    }
+
+    @Override
+    protected Object getSingleArrayProperty(String name) {
+        Object value = values.get(name);
+        if (Array.getLength(value) != 1)
+            throw new IllegalArgumentException(
+                    "expected annotation property array to contain exactly one element but found "
+                            + Array.getLength(value));
+        return Array.get(value, 0);
+    }
+
+    @Override
+    public boolean[] getBooleanArrayProperty(String name) {
+        return (boolean[]) arrayProperty(name, boolean.class);
+    }
+
+    @Override
+    public byte[] getByteArrayProperty(String name) {
+        return (byte[]) arrayProperty(name, byte.class);
+    }
+
+    @Override
+    public char[] getCharArrayProperty(String name) {
+        return (char[]) arrayProperty(name, char.class);
+    }
+
+    @Override
+    public short[] getShortArrayProperty(String name) {
+        return (short[]) arrayProperty(name, short.class);
+    }
+
+    @Override
+    public int[] getIntArrayProperty(String name) {
+        return (int[]) arrayProperty(name, int.class);
+    }
+
+    @Override
+    public long[] getLongArrayProperty(String name) {
+        return (long[]) arrayProperty(name, long.class);
+    }
+
+    @Override
+    public float[] getFloatArrayProperty(String name) {
+        return (float[]) arrayProperty(name, float.class);
+    }
+
+    @Override
+    public double[] getDoubleArrayProperty(String name) {
+        return (double[]) arrayProperty(name, double.class);
+    }
+
+    /** A copy of the array value; or a new array with a non-array value as the only element */
+    private Object arrayProperty(String name, Class<?> componentType) {
+        Object value = getProperty(name);
+        if (isArray(value))
+            return value;
+        Object array = Array.newInstance(componentType, 1);
+        Array.set(array, 0, value);
+        return array;
+    }
+
+    @Override
+    public String getEnumProperty(String name) {
+        return (String) getSingleProperty(name);
+    }
+
+    @Override
+    public List<String> getEnumProperties(String name) {
+        return getStringProperties(name);
+    }
+
+    @Override
+    public Type getTypeProperty(String name) {
+        return (Type) getSingleProperty(name);
+    }
+
+    @Override
+    public List<Type> getTypeProperties(String name) {
+        return listProperty(name, Type.class);
+    }
+
+    @Override
+    public AnnotationWrapper getAnnotationProperty(String name) {
+        return (AnnotationWrapper) getSingleProperty(name);
+    }
+
+    @Override
+    public List<AnnotationWrapper> getAnnotationProperties(String name) {
+        return listProperty(name, AnnotationWrapper.class);
+    }
+
+    private <T> List<T> listProperty(String name, Class<T> type) {
+        Object value = getProperty(name);
+        if (!isArray(value))
+            return singletonList(type.cast(value));
+        List<T> list = new ArrayList<>();
+        for (Object element : (Object[]) value)
+            list.add(type.cast(element));
+        return list;
+    }
+
+    @Override
+    protected boolean is(Modifier modifier) {
+        return annotationType.is(modifier);
+    }
+
+    @Override
+    public <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+        return annotationType.getAnnotations(type);
+    }
+
+    @Override
+    public List<AnnotationWrapper> getAnnotationWrappers() {
+        return annotationType.getAnnotationWrappers();
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
+        return annotationType.getAnnotationWrappers(type);
+    }
+
+    @Override
+    public JavaDocModel getJavaDoc() {
+        return annotationType.getJavaDoc();
+    }
+
+    @Override
+    protected void message(Diagnostic.Kind kind, CharSequence message) {
+        snapshot.queue(new Message(source, kind, message.toString()));
+    }
+
+    @Override
+    AnnotationTypeCache annotationTypes() {
+        return snapshot.annotationTypes();
+    }
+
+    @Override
+    public String toString() {
+        return string;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.JavaDocModel;
+
+/** The parts that all {@link Snapshot}s of {@link Elemental}s capture, and the implementations that use them */
+class SnapshotElement {
+    private final Snapshot snapshot;
+    private final Elemental source;
+    private final Set<Modifier> modifiers;
+    private final Logger log;
+    private List<AnnotationWrapper> annotations = emptyList();
+    private JavaDocModel javaDoc;
+
+    SnapshotElement(Snapshot snapshot, Elemental source, Set<Modifier> modifiers) {
+        this.snapshot = snapshot;
+        this.source = source;
+        this.modifiers = modifiers;
+        this.log = source.log();
+    }
+
+    void annotations(List<AnnotationWrapper> annotations, JavaDocModel javaDoc) {
+        this.annotations = unmodifiableList(annotations);
+        this.javaDoc = javaDoc;
+    }
+
+    /** The logger is thread safe, so it can be shared */
+    Logger log() {
+        return log;
+    }
+
+    boolean is(Modifier modifier) {
+        return modifiers.contains(modifier);
+    }
+
+    /** Views on the annotation wrappers, so only annotations without <code>Class</code> properties work */
+    <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+        List<T> result = new ArrayList<>();
+        for (AnnotationWrapper annotation : getAnnotationWrappers(type))
+            result.add(annotation.as(type));
+        return result;
+    }
+
+    List<AnnotationWrapper> getAnnotationWrappers() {
+        return annotations;
+    }
+
+    <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
+        String name = Elemental.nameOf(type);
+        List<AnnotationWrapper> result = new ArrayList<>();
+        for (AnnotationWrapper annotation : annotations)
+            if (AnnotationTypeCache.nameOf(annotation.getAnnotationType()).equals(name))
+                result.add(annotation);
+        return result;
+    }
+
+    JavaDocModel getJavaDoc() {
+        return javaDoc;
+    }
+
+    void message(Diagnostic.Kind kind, CharSequence message) {
+        snapshot.queue(new Message(source, kind, message.toString()));
+    }
+
+    AnnotationTypeCache annotationTypes() {
+        return snapshot.annotationTypes();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import javax.lang.model.element.*;
+import javax.tools.Diagnostic;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.JavaDocModel;
+
+class SnapshotField extends Field {
+    private final SnapshotElement element;
+    private final String name;
+    private Type type;
+    private List<Type> typeParameters = emptyList();
+
+    SnapshotField(SnapshotElement element, Type declaringType, Field source) {
+        super(declaringType, DummyProxy.of(VariableElement.class));
+        this.element = element;
+        this.name = source.getName();
+    }
+
+    void type(Type type, List<Type> typeParameters) {
+        this.type = type;
+        this.typeParameters = unmodifiableList(typeParameters);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    @Override
+    public List<Type> getTypeParameters() {
+        return typeParameters;
+    }
+
+    @Override
+    public Logger log() {
+        return element.log();
+    }
+
+    @Override
+    protected boolean is(Modifier modifier) {
+        return element.is(modifier);
+    }
+
+    @Override
+    public <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+        return element.getAnnotations(type);
+    }
+
+    @Override
+    public List<AnnotationWrapper> getAnnotationWrappers() {
+        return element.getAnnotationWrappers();
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
+        return element.getAnnotationWrappers(type);
+    }
+
+    @Override
+    public JavaDocModel getJavaDoc() {
+        return element.getJavaDoc();
+    }
+
+    @Override
+    protected void message(Diagnostic.Kind kind, CharSequence message) {
+        element.message(kind, message);
+    }
+
+    @Override
+    AnnotationTypeCache annotationTypes() {
+        return element.annotationTypes();
+    }
+}
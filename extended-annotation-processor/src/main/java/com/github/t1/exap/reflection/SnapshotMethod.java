@@ -0,0 +1,91 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import javax.lang.model.element.*;
+import javax.tools.Diagnostic;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.JavaDocModel;
+
+class SnapshotMethod extends Method {
+    private final SnapshotElement element;
+    private final String name;
+    private Type returnType;
+    private List<Parameter> parameters = emptyList();
+
+    SnapshotMethod(SnapshotElement element, Type declaringType, Method source) {
+        super(declaringType, DummyProxy.of(ExecutableElement.class));
+        this.element = element;
+        this.name = source.getName();
+    }
+
+    void signature(Type returnType, List<Parameter> parameters) {
+        this.returnType = returnType;
+        this.parameters = unmodifiableList(parameters);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<Parameter> getParameters() {
+        return parameters;
+    }
+
+    @Override
+    public Type getReturnType() {
+        return returnType;
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> findAnnotationWrappers(Class<T> type) {
+        throw new UnsupportedOperationException("the overridden annotations of " + this + " are not in the snapshot");
+    }
+
+    @Override
+    public Logger log() {
+        return element.log();
+    }
+
+    @Override
+    protected boolean is(Modifier modifier) {
+        return element.is(modifier);
+    }
+
+    @Override
+    public <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+        return element.getAnnotations(type);
+    }
+
+    @Override
+    public List<AnnotationWrapper> getAnnotationWrappers() {
+        return element.getAnnotationWrappers();
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
+        return element.getAnnotationWrappers(type);
+    }
+
+    @Override
+    public JavaDocModel getJavaDoc() {
+        return element.getJavaDoc();
+    }
+
+    @Override
+    protected void message(Diagnostic.Kind kind, CharSequence message) {
+        element.message(kind, message);
+    }
+
+    @Override
+    AnnotationTypeCache annotationTypes() {
+        return element.annotationTypes();
+    }
+}
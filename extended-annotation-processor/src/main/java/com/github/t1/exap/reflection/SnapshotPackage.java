@@ -0,0 +1,62 @@
+package com.github.t1.exap.reflection;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import javax.lang.model.element.*;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.JavaDocModel;
+
+/** Only the name of a package; creating files still has to be done on the processor thread */
+class SnapshotPackage extends Package {
+    private final String name;
+    private final Logger log;
+
+    SnapshotPackage(String name, Logger log) {
+        super(name.isEmpty() ? null : DummyProxy.of(PackageElement.class));
+        this.name = name;
+        this.log = log;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Logger log() {
+        return log;
+    }
+
+    /** Packages have no modifiers */
+    @Override
+    protected boolean is(Modifier modifier) {
+        return false;
+    }
+
+    @Override
+    public <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+        throw annotationsNotInSnapshot();
+    }
+
+    @Override
+    public List<AnnotationWrapper> getAnnotationWrappers() {
+        throw annotationsNotInSnapshot();
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
+        throw annotationsNotInSnapshot();
+    }
+
+    @Override
+    public JavaDocModel getJavaDoc() {
+        throw annotationsNotInSnapshot();
+    }
+
+    private UnsupportedOperationException annotationsNotInSnapshot() {
+        return new UnsupportedOperationException("the annotations of " + this + " are not in the snapshot");
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+
+import java.lang.annotation.Annotation;
+import java.util.*;
+import java.util.stream.Stream;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+import org.slf4j.Logger;
+
+import com.github.t1.exap.*;
+
+/**
+ * The members are only captured for the types the {@link Snapshot} was created for, not for the types they
+ * reference.
+ */
+class SnapshotType extends Type {
+    private final SnapshotElement element;
+    private final boolean declared;
+    private final String simpleName;
+    private final String fullName;
+    private final Package pkg;
+    private final int classification;
+    private final List<String> enumValues;
+    private final Set<String> supertypeNames;
+
+    private Type elementType;
+    private Type superType;
+    private List<Type> typeParameters = emptyList();
+    private List<Method> methods;
+    private List<Method> staticMethods;
+    private List<Method> allMethods;
+    private List<Field> fields;
+    private List<Field> staticFields;
+    private List<Field> allFields;
+
+    SnapshotType(SnapshotElement element, Type source, int classification) {
+        super(DummyProxy.of(TypeMirror.class));
+        this.element = element;
+        this.declared = source.isDeclared();
+        this.fullName = source.getFullName();
+        this.simpleName = (declared || source.isPrimitive() || source.isArray()) ? source.getSimpleName() : fullName;
+        this.pkg = declared ? new SnapshotPackage(packageName(source), element.log()) : null;
+        this.classification = classification;
+        this.enumValues = source.isEnum() ? unmodifiableList(source.getEnumValues()) : null;
+        this.supertypeNames = declared ? unmodifiableSet(new HashSet<>(source.getSupertypeNames()))
+                : source.getSupertypeNames();
+    }
+
+    private static String packageName(Type source) {
+        String name = source.getPackage().getName();
+        return (name == null) ? "" : name;
+    }
+
+    void references(Type elementType, Type superType, List<Type> typeParameters) {
+        this.elementType = elementType;
+        this.superType = superType;
+        this.typeParameters = unmodifiableList(typeParameters);
+    }
+
+    void members(List<Method> methods, List<Method> staticMethods, List<Method> allMethods, List<Field> fields,
+            List<Field> staticFields, List<Field> allFields) {
+        this.methods = unmodifiableList(methods);
+        this.staticMethods = unmodifiableList(staticMethods);
+        this.allMethods = unmodifiableList(allMethods);
+        this.fields = unmodifiableList(fields);
+        this.staticFields = unmodifiableList(staticFields);
+        this.allFields = unmodifiableList(allFields);
+    }
+
+    @Override
+    protected TypeElement getElement() {
+        return null;
+    }
+
+    @Override
+    boolean isDeclared() {
+        return declared;
+    }
+
+    @Override
+    public String getSimpleName() {
+        return simpleName;
+    }
+
+    @Override
+    public String getRelativeName() {
+        return (pkg == null) ? fullName : super.getRelativeName();
+    }
+
+    @Override
+    public String getFullName() {
+        return fullName;
+    }
+
+    @Override
+    protected int classify() {
+        return classification;
+    }
+
+    @Override
+    public List<String> getEnumValues() {
+        return enumValues;
+    }
+
+    @Override
+    public Stream<String> enumValues() {
+        return (enumValues == null) ? Stream.empty() : enumValues.stream();
+    }
+
+    @Override
+    public Type elementType() {
+        return elementType;
+    }
+
+    @Override
+    public List<Type> getTypeParameters() {
+        return typeParameters;
+    }
+
+    @Override
+    public boolean isA(Type type) {
+        String name = type.getFullName();
+        return supertypeNames.contains(name.contains("<") ? name.substring(0, name.indexOf('<')) : name);
+    }
+
+    @Override
+    public Set<String> getSupertypeNames() {
+        return supertypeNames;
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> findAnnotationWrappers(Class<T> type) {
+        throw new UnsupportedOperationException("the hierarchy annotations of " + this + " are not in the snapshot");
+    }
+
+    @Override
+    public List<Method> getAllMethods() {
+        return members(allMethods);
+    }
+
+    @Override
+    public List<Method> getMethods() {
+        return members(methods);
+    }
+
+    @Override
+    public List<Method> getStaticMethods() {
+        return members(staticMethods);
+    }
+
+    @Override
+    public Stream<Method> methods() {
+        return getMethods().stream();
+    }
+
+    @Override
+    public Stream<Method> staticMethods() {
+        return getStaticMethods().stream();
+    }
+
+    @Override
+    public List<Field> getAllFields() {
+        return members(allFields);
+    }
+
+    @Override
+    public List<Field> getFields() {
+        return members(fields);
+    }
+
+    @Override
+    public List<Field> getStaticFields() {
+        return members(staticFields);
+    }
+
+    @Override
+    public Stream<Field> fields() {
+        return getFields().stream();
+    }
+
+    @Override
+    public Stream<Field> staticFields() {
+        return getStaticFields().stream();
+    }
+
+    private <T> List<T> members(List<T> members) {
+        if (members == null)
+            throw new UnsupportedOperationException("the members of " + this + " are not in the snapshot, as it's"
+                    + " only referenced by the snapshot types");
+        return members;
+    }
+
+    @Override
+    public Type getSuperType() {
+        return superType;
+    }
+
+    @Override
+    public Package getPackage() {
+        return pkg;
+    }
+
+    @Override
+    public Logger log() {
+        return element.log();
+    }
+
+    @Override
+    protected boolean is(Modifier modifier) {
+        return element.is(modifier);
+    }
+
+    @Override
+    public <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+        return element.getAnnotations(type);
+    }
+
+    @Override
+    public List<AnnotationWrapper> getAnnotationWrappers() {
+        return element.getAnnotationWrappers();
+    }
+
+    @Override
+    public <T extends Annotation> List<AnnotationWrapper> getAnnotationWrappers(Class<T> type) {
+        return element.getAnnotationWrappers(type);
+    }
+
+    @Override
+    public JavaDocModel getJavaDoc() {
+        return element.getJavaDoc();
+    }
+
+    @Override
+    protected void message(Diagnostic.Kind kind, CharSequence message) {
+        element.message(kind, message);
+    }
+
+    @Override
+    AnnotationTypeCache annotationTypes() {
+        return element.annotationTypes();
+    }
+
+    @Override
+    public int hashCode() {
+        return fullName.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        return this.fullName.equals(((SnapshotType) obj).fullName);
+    }
+}
@@ -1,11 +1,14 @@
 package com.github.t1.exap.reflection;
 
+import static java.util.Collections.*;
 import static java.util.Objects.*;
+import static java.util.stream.Collectors.*;
 import static javax.lang.model.element.ElementKind.*;
-import static javax.lang.model.element.Modifier.*;
 import static javax.lang.model.type.TypeKind.*;
 
+import java.lang.annotation.Annotation;
 import java.util.*;
+import java.util.stream.Stream;
 
 import javax.lang.model.element.*;
 import javax.lang.model.type.*;
@@ -13,17 +16,45 @@ import javax.lang.model.type.*;
 import com.github.t1.exap.Round;
 
 public class Type extends Elemental {
+    /** The same mirror always results in the same instance within a {@link Round} */
     public static Type of(TypeMirror type, Round round) {
-        return new Type(type, round);
-    }
+        return round.cache().type(type);
+    }
+
+    static final int CLASSIFIED = 1;
+    static final int IS_VOID = 1 << 1;
+    static final int IS_PRIMITIVE = 1 << 2;
+    static final int IS_BOOLEAN = 1 << 3;
+    static final int IS_CHARACTER = 1 << 4;
+    static final int IS_INTEGER = 1 << 5;
+    static final int IS_FLOATING = 1 << 6;
+    static final int IS_STRING = 1 << 7;
+    static final int IS_ENUM = 1 << 8;
+    static final int IS_ARRAY = 1 << 9;
+    static final int IS_COLLECTION = 1 << 10;
+    static final int IS_MAP = 1 << 11;
 
     private final TypeMirror type;
+    private int classification = 0;
+    private List<Method> methods = null;
+    private List<Method> staticMethods = null;
+    private List<Field> fields = null;
+    private List<Field> staticFields = null;
+    private List<Method> allMethods = null;
+    private List<Field> allFields = null;
+    private Map<String, List<Method>> methodsByName = null;
+    private Map<String, Field> fieldsByName = null;
 
     protected Type(TypeMirror type, Round round) {
         super(round);
         this.type = requireNonNull(type, "type");
     }
 
+    /** Detached from the round, for the {@link Snapshot}s */
+    Type(TypeMirror type) {
+        this.type = requireNonNull(type, "type");
+    }
+
     @Override
     protected TypeElement getElement() {
         return asElement(type);
@@ -95,63 +126,128 @@ public class Type extends Elemental {
         return type.toString();
     }
 
-    private boolean isType(Class<?> type) {
-        return isKind(DECLARED) && getFullName().equals(type.getName());
+    private boolean is(int classificationBit) {
+        if (classification == 0)
+            classification = CLASSIFIED | classify();
+        return (classification & classificationBit) != 0;
+    }
+
+    /** The bits for all predicates that apply to this type, e.g. {@link #IS_PRIMITIVE} and {@link #IS_INTEGER} */
+    protected int classify() {
+        switch (type.getKind()) {
+            case VOID:
+                return IS_VOID;
+            case BOOLEAN:
+                return IS_PRIMITIVE | IS_BOOLEAN;
+            case CHAR:
+                return IS_PRIMITIVE | IS_CHARACTER;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return IS_PRIMITIVE | IS_INTEGER;
+            case FLOAT:
+            case DOUBLE:
+                return IS_PRIMITIVE | IS_FLOATING;
+            case ARRAY:
+                return IS_ARRAY;
+            case DECLARED:
+                return classifyDeclared();
+            default:
+                return 0;
+        }
+    }
+
+    private int classifyDeclared() {
+        switch (getElement().getQualifiedName().toString()) {
+            case "java.lang.Void":
+                return IS_VOID;
+            case "java.lang.Boolean":
+                return IS_BOOLEAN;
+            case "java.lang.Character":
+                return IS_CHARACTER;
+            case "java.lang.Byte":
+            case "java.lang.Short":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+                return IS_INTEGER;
+            case "java.lang.Float":
+            case "java.lang.Double":
+                return IS_FLOATING;
+            case "java.lang.String":
+                return IS_STRING;
+        }
+        int bits = 0;
+        if (getElement().getKind() == ENUM)
+            bits |= IS_ENUM;
+        if (isA(Collection.class))
+            bits |= IS_COLLECTION;
+        if (isA(Map.class))
+            bits |= IS_MAP;
+        return bits;
     }
 
     public boolean isVoid() {
-        return isKind(VOID) || isType(Void.class);
+        return is(IS_VOID);
     }
 
     public boolean isPrimitive() {
-        return type.getKind().isPrimitive();
+        return is(IS_PRIMITIVE);
     }
 
     public boolean isBoolean() {
-        return isKind(BOOLEAN) || isType(Boolean.class);
+        return is(IS_BOOLEAN);
     }
 
     public boolean isCharacter() {
-        return isKind(CHAR) || isType(Character.class);
+        return is(IS_CHARACTER);
     }
 
     public boolean isNumber() {
-        return isInteger() || isFloating();
+        return is(IS_INTEGER | IS_FLOATING);
     }
 
     public boolean isInteger() {
-        return isKind(BYTE) || isType(Byte.class)//
-                || isKind(SHORT) || isType(Short.class)//
-                || isKind(INT) || isType(Integer.class)//
-                || isKind(LONG) || isType(Long.class);
+        return is(IS_INTEGER);
     }
 
     public boolean isFloating() {
-        return isKind(FLOAT) || isType(Float.class)//
-                || isKind(DOUBLE) || isType(Double.class);
+        return is(IS_FLOATING);
     }
 
     public boolean isString() {
-        return isType(String.class);
+        return is(IS_STRING);
     }
 
     public boolean isEnum() {
-        return (getElement() == null) ? false : getElement().getKind() == ENUM;
+        return is(IS_ENUM);
+    }
+
+    public boolean isCollection() {
+        return is(IS_COLLECTION);
+    }
+
+    public boolean isMap() {
+        return is(IS_MAP);
     }
 
     public List<String> getEnumValues() {
         if (!isEnum())
             return null;
-        List<String> values = new ArrayList<>();
-        if (getElement() != null)
-            for (Element element : getElement().getEnclosedElements())
-                if (element.getKind() == ENUM_CONSTANT)
-                    values.add(element.getSimpleName().toString());
-        return values;
+        return enumValues().collect(toList());
+    }
+
+    /** The names of the enum constants, or an empty stream if this is not an enum */
+    public Stream<String> enumValues() {
+        if (!isEnum())
+            return Stream.empty();
+        return getElement().getEnclosedElements().stream() //
+                .filter(element -> element.getKind() == ENUM_CONSTANT) //
+                .map(element -> element.getSimpleName().toString());
     }
 
     public boolean isArray() {
-        return isKind(ARRAY);
+        return is(IS_ARRAY);
     }
 
     public Type elementType() {
@@ -168,6 +264,11 @@ public class Type extends Elemental {
         return result;
     }
 
+    /** A class, interface, enum, or annotation type, i.e. not a primitive, array, type variable, etc. */
+    boolean isDeclared() {
+        return isKind(DECLARED);
+    }
+
     public boolean isA(Type type) {
         // The following methods return false for, e.g., a List<String> and java.util.Collection<E>
         // as they have different type arguments:
@@ -178,20 +279,14 @@ public class Type extends Elemental {
         return isA(toRawString(type.type));
     }
 
+    /** Nested classes are compared by their canonical name, as that's what the mirrors use. */
     public boolean isA(Class<?> type) {
-        return isA(type.getName());
+        return isA((type.getCanonicalName() == null) ? type.getName() : type.getCanonicalName());
     }
 
     private boolean isA(String thatTypeName) {
         try {
-            if (toRawString(this.type).equals(thatTypeName))
-                return true;
-            if (isVoid() || isPrimitive())
-                return false;
-            for (TypeMirror supertype : allTypes())
-                if (toRawString(supertype).equals(thatTypeName))
-                    return true;
-            return false;
+            return getSupertypeNames().contains(thatTypeName);
         } catch (Error e) {
             throw new Error(this.type + " isSubclassOf " + thatTypeName, e);
         }
@@ -204,99 +299,190 @@ public class Type extends Elemental {
         return string;
     }
 
-    private List<TypeMirror> allTypes() {
-        Set<TypeMirror> result = new LinkedHashSet<>();
-        for (TypeMirror t = type; t.getKind() != TypeKind.NONE; t = superClass(t)) {
-            result.add(t);
-            addInterfaces(result, t);
-        }
-        return new ArrayList<>(result);
+    /**
+     * The qualified names of this type and all of its superclasses and interfaces, without type arguments, i.e. all
+     * names this type {@link #isA(Class) is a}.
+     */
+    public Set<String> getSupertypeNames() {
+        if (isKind(DECLARED))
+            return declaration().supertypeNames();
+        return singleton(toRawString(type));
     }
 
-    private TypeMirror superClass(TypeMirror typeMirror) {
-        TypeElement element = asElement(typeMirror);
-        return element.getSuperclass();
+    /**
+     * The annotations of that type on this type or, if there are none, on the nearest of its superclasses or
+     * interfaces that has some: first the superclass and its supertypes, then the interfaces and theirs.
+     */
+    public <T extends Annotation> List<AnnotationWrapper> findAnnotationWrappers(Class<T> type) {
+        if (!isKind(DECLARED))
+            return emptyList();
+        return declaration().hierarchyAnnotations(nameOf(type));
     }
 
-    private void addInterfaces(Set<TypeMirror> result, TypeMirror t) {
-        for (TypeMirror i : asElement(t).getInterfaces()) {
-            result.add(i);
-            addInterfaces(result, i);
-        }
+    private TypeDeclaration declaration() {
+        return round().cache().declaration(getElement());
     }
 
+    /**
+     * The non-static methods of this type, its superclasses, and its interfaces (incl. default methods), but without
+     * those overridden by another one of them. The list is cached, so it can't be modified.
+     */
     public List<Method> getAllMethods() {
-        List<Method> methods = new ArrayList<>();
-        methods.addAll(getMethods());
-        if (getSuperType() != null)
-            methods.addAll(getSuperType().getAllMethods());
-        return methods;
+        if (allMethods == null) {
+            List<Method> list = new ArrayList<>();
+            if (getElement() != null)
+                for (ExecutableElement method : declaration().allMethods())
+                    list.add(round().cache().method(declaringType(method), method));
+            allMethods = unmodifiableList(list);
+        }
+        return allMethods;
+    }
+
+    /** This type or the supertype the member is inherited from */
+    private Type declaringType(Element member) {
+        TypeElement declaringElement = (TypeElement) member.getEnclosingElement();
+        if (declaringElement.equals(getElement()))
+            return this;
+        return Type.of(declaration().supertype(declaringElement), round());
     }
 
+    /** The non-static methods declared in this type; the list is cached, so it can't be modified */
     public List<Method> getMethods() {
-        return getMethods(false);
+        if (methods == null)
+            methods = unmodifiableList(getMethods(false));
+        return methods;
     }
 
+    /** The static methods declared in this type; the list is cached, so it can't be modified */
     public List<Method> getStaticMethods() {
-        return getMethods(true);
+        if (staticMethods == null)
+            staticMethods = unmodifiableList(getMethods(true));
+        return staticMethods;
     }
 
     private List<Method> getMethods(boolean isStatic) {
-        List<Method> list = new ArrayList<>();
-        if (getElement() != null)
-            for (Element element : getElement().getEnclosedElements())
-                if (element.getModifiers().contains(STATIC) == isStatic)
-                    if (element.getKind() == METHOD)
-                        list.add(new Method(this, (ExecutableElement) element, round()));
-        return list;
+        return methods(isStatic).collect(toList());
     }
 
-    public Method getMethod(String name) {
-        for (Method method : getMethods())
-            if (method.getName().equals(name))
-                return method;
-        throw new RuntimeException("method not found: " + name + ".\n  Only knows: " + getMethods());
+    /** The non-static methods, only wrapped as far as the stream is consumed */
+    public Stream<Method> methods() {
+        return (methods == null) ? methods(false) : methods.stream();
+    }
+
+    /** The static methods, only wrapped as far as the stream is consumed */
+    public Stream<Method> staticMethods() {
+        return (staticMethods == null) ? methods(true) : staticMethods.stream();
     }
 
+    private Stream<Method> methods(boolean isStatic) {
+        if (getElement() == null)
+            return Stream.empty();
+        return declaration().methods(isStatic).stream().map(element -> round().cache().method(this, element));
+    }
+
+    public Stream<Method> methodsAnnotatedWith(Class<? extends Annotation> type) {
+        return methods().filter(method -> method.isAnnotated(type));
+    }
+
+    /** All non-static methods with that name, i.e. all overloads */
+    public List<Method> getMethods(String name) {
+        List<Method> overloads = methodsByName().get(name);
+        return (overloads == null) ? emptyList() : overloads;
+    }
+
+    public Method getMethod(String name) {
+        List<Method> overloads = methodsByName().get(name);
+        if (overloads == null)
+            throw new RuntimeException("method not found: " + name + ".\n  Only knows: " + getMethods());
+        return overloads.get(0);
+    }
 
     public boolean hasMethod(String name) {
-        for (Method method : getMethods())
-            if (method.getName().equals(name))
-                return true;
-        return false;
+        return methodsByName().containsKey(name);
+    }
+
+    private Map<String, List<Method>> methodsByName() {
+        if (methodsByName == null) {
+            Map<String, List<Method>> map = new HashMap<>();
+            for (Method method : getMethods())
+                map.computeIfAbsent(method.getName(), n -> new ArrayList<>(1)).add(method);
+            methodsByName = map;
+        }
+        return methodsByName;
     }
 
+    /**
+     * The non-static fields of this type and its superclasses, but without those hidden by another one of them. The
+     * list is cached, so it can't be modified.
+     */
     public List<Field> getAllFields() {
-        List<Field> fields = new ArrayList<>();
-        fields.addAll(getFields());
-        if (getSuperType() != null)
-            fields.addAll(getSuperType().getAllFields());
-        return fields;
+        if (allFields == null) {
+            List<Field> list = new ArrayList<>();
+            if (getElement() != null)
+                for (VariableElement field : declaration().allFields())
+                    list.add(round().cache().field(declaringType(field), field));
+            allFields = unmodifiableList(list);
+        }
+        return allFields;
     }
 
+    /** The non-static fields declared in this type; the list is cached, so it can't be modified */
     public List<Field> getFields() {
-        return getFields(false);
+        if (fields == null)
+            fields = unmodifiableList(getFields(false));
+        return fields;
     }
 
+    /** The static fields declared in this type; the list is cached, so it can't be modified */
     public List<Field> getStaticFields() {
-        return getFields(true);
+        if (staticFields == null)
+            staticFields = unmodifiableList(getFields(true));
+        return staticFields;
     }
 
     private List<Field> getFields(boolean isStatic) {
-        List<Field> fields = new ArrayList<>();
-        if (getElement() != null)
-            for (Element element : getElement().getEnclosedElements())
-                if (element.getModifiers().contains(STATIC) == isStatic)
-                    if (element.getKind() == FIELD)
-                        fields.add(new Field(this, (VariableElement) element, round()));
-        return fields;
+        return fields(isStatic).collect(toList());
+    }
+
+    /** The non-static fields, only wrapped as far as the stream is consumed */
+    public Stream<Field> fields() {
+        return (fields == null) ? fields(false) : fields.stream();
+    }
+
+    /** The static fields, only wrapped as far as the stream is consumed */
+    public Stream<Field> staticFields() {
+        return (staticFields == null) ? fields(true) : staticFields.stream();
+    }
+
+    private Stream<Field> fields(boolean isStatic) {
+        if (getElement() == null)
+            return Stream.empty();
+        return declaration().fields(isStatic).stream().map(element -> round().cache().field(this, element));
+    }
+
+    public Stream<Field> fieldsAnnotatedWith(Class<? extends Annotation> type) {
+        return fields().filter(field -> field.isAnnotated(type));
     }
 
     public Field getField(String name) {
-        for (Field field : getFields())
-            if (field.getName().equals(name))
-                return field;
-        throw new RuntimeException("field not found: " + name + ".\n  Only knows: " + getFields());
+        Field field = fieldsByName().get(name);
+        if (field == null)
+            throw new RuntimeException("field not found: " + name + ".\n  Only knows: " + getFields());
+        return field;
+    }
+
+    public boolean hasField(String name) {
+        return fieldsByName().containsKey(name);
+    }
+
+    private Map<String, Field> fieldsByName() {
+        if (fieldsByName == null) {
+            Map<String, Field> map = new HashMap<>();
+            for (Field field : getFields())
+                map.put(field.getName(), field);
+            fieldsByName = map;
+        }
+        return fieldsByName;
     }
 
     public Type getSuperType() {
@@ -0,0 +1,227 @@
+package com.github.t1.exap.reflection;
+
+import static java.util.Collections.*;
+import static javax.lang.model.element.ElementKind.*;
+import static javax.lang.model.element.Modifier.*;
+import static javax.lang.model.type.TypeKind.*;
+
+import java.util.*;
+
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+
+/**
+ * The data derived from a {@link TypeElement}, i.e. shared by all {@link Type}s of that element, whatever their type
+ * arguments are. Computed lazily and only once per element and {@link com.github.t1.exap.Round}.
+ */
+class TypeDeclaration {
+    private final TypeElement element;
+    private final ModelCache cache;
+
+    private List<DeclaredType> directSupertypes = null;
+    private Map<TypeElement, DeclaredType> supertypes = null;
+    private Set<String> supertypeNames = null;
+    private List<ExecutableElement> methods = null;
+    private List<ExecutableElement> staticMethods = null;
+    private List<VariableElement> fields = null;
+    private List<VariableElement> staticFields = null;
+    private List<ExecutableElement> allMethods = null;
+    private List<VariableElement> allFields = null;
+    private final Map<String, List<AnnotationWrapper>> hierarchyAnnotations = new HashMap<>();
+    private final Map<ExecutableElement, Map<String, List<AnnotationWrapper>>> methodHierarchyAnnotations =
+            new IdentityHashMap<>();
+
+    TypeDeclaration(TypeElement element, ModelCache cache) {
+        this.element = element;
+        this.cache = cache;
+    }
+
+    private TypeDeclaration declaration(DeclaredType type) {
+        return cache.declaration(asElement(type));
+    }
+
+    private static TypeElement asElement(DeclaredType type) {
+        return (TypeElement) type.asElement();
+    }
+
+    /** The superclass (if any) and the interfaces */
+    private List<DeclaredType> directSupertypes() {
+        if (directSupertypes == null) {
+            List<DeclaredType> list = new ArrayList<>();
+            if (element.getSuperclass().getKind() == DECLARED)
+                list.add((DeclaredType) element.getSuperclass());
+            for (TypeMirror anInterface : element.getInterfaces())
+                if (anInterface.getKind() == DECLARED)
+                    list.add((DeclaredType) anInterface);
+            directSupertypes = unmodifiableList(list);
+        }
+        return directSupertypes;
+    }
+
+    /** All superclasses and interfaces, mapped to the type (with type arguments) they are extended/implemented as */
+    private Map<TypeElement, DeclaredType> supertypes() {
+        if (supertypes == null) {
+            Map<TypeElement, DeclaredType> map = new LinkedHashMap<>();
+            for (DeclaredType supertype : directSupertypes())
+                map.put(asElement(supertype), supertype);
+            for (DeclaredType supertype : directSupertypes())
+                for (Map.Entry<TypeElement, DeclaredType> entry : declaration(supertype).supertypes().entrySet())
+                    map.putIfAbsent(entry.getKey(), entry.getValue());
+            supertypes = map;
+        }
+        return supertypes;
+    }
+
+    /** The type the declaring type of a member is extended/implemented as, or null if it's not a supertype */
+    DeclaredType supertype(TypeElement declaringType) {
+        return supertypes().get(declaringType);
+    }
+
+    /** The qualified names of this type and all of its superclasses and interfaces, without type arguments */
+    Set<String> supertypeNames() {
+        if (supertypeNames == null) {
+            Set<String> names = new HashSet<>();
+            names.add(element.getQualifiedName().toString());
+            for (TypeElement supertype : supertypes().keySet())
+                names.add(supertype.getQualifiedName().toString());
+            supertypeNames = unmodifiableSet(names);
+        }
+        return supertypeNames;
+    }
+
+    List<ExecutableElement> methods(boolean isStatic) {
+        if (methods == null)
+            partitionMembers();
+        return isStatic ? staticMethods : methods;
+    }
+
+    List<VariableElement> fields(boolean isStatic) {
+        if (fields == null)
+            partitionMembers();
+        return isStatic ? staticFields : fields;
+    }
+
+    private void partitionMembers() {
+        List<ExecutableElement> methods = new ArrayList<>();
+        List<ExecutableElement> staticMethods = new ArrayList<>();
+        List<VariableElement> fields = new ArrayList<>();
+        List<VariableElement> staticFields = new ArrayList<>();
+        for (Element member : element.getEnclosedElements()) {
+            boolean isStatic = member.getModifiers().contains(STATIC);
+            if (member.getKind() == METHOD)
+                (isStatic ? staticMethods : methods).add((ExecutableElement) member);
+            else if (member.getKind() == FIELD)
+                (isStatic ? staticFields : fields).add((VariableElement) member);
+        }
+        this.methods = unmodifiableList(methods);
+        this.staticMethods = unmodifiableList(staticMethods);
+        this.fields = unmodifiableList(fields);
+        this.staticFields = unmodifiableList(staticFields);
+    }
+
+    /**
+     * The non-static methods of this type, its superclasses, and its interfaces (incl. default methods), without
+     * those that are overridden by another one of them.
+     */
+    List<ExecutableElement> allMethods() {
+        if (allMethods == null) {
+            Set<ExecutableElement> set = new LinkedHashSet<>(methods(false));
+            Map<Name, List<ExecutableElement>> byName = new HashMap<>();
+            for (ExecutableElement method : set)
+                byName.computeIfAbsent(method.getSimpleName(), n -> new ArrayList<>(1)).add(method);
+            for (DeclaredType supertype : directSupertypes())
+                for (ExecutableElement inherited : declaration(supertype).allMethods())
+                    if (!set.contains(inherited) && !isOverridden(inherited, byName)) {
+                        set.add(inherited);
+                        byName.computeIfAbsent(inherited.getSimpleName(), n -> new ArrayList<>(1)).add(inherited);
+                    }
+            allMethods = unmodifiableList(new ArrayList<>(set));
+        }
+        return allMethods;
+    }
+
+    private boolean isOverridden(ExecutableElement method, Map<Name, List<ExecutableElement>> byName) {
+        List<ExecutableElement> candidates = byName.get(method.getSimpleName());
+        if (candidates != null)
+            for (ExecutableElement candidate : candidates)
+                if (cache.elements().overrides(candidate, method, element))
+                    return true;
+        return false;
+    }
+
+    /** The non-static fields of this type and its superclasses, without those hidden by another one of them */
+    List<VariableElement> allFields() {
+        if (allFields == null) {
+            List<VariableElement> list = new ArrayList<>(fields(false));
+            if (element.getSuperclass().getKind() == DECLARED)
+                for (VariableElement inherited : declaration((DeclaredType) element.getSuperclass()).allFields())
+                    if (!isHidden(inherited, list))
+                        list.add(inherited);
+            allFields = unmodifiableList(list);
+        }
+        return allFields;
+    }
+
+    private boolean isHidden(VariableElement field, List<VariableElement> candidates) {
+        for (VariableElement candidate : candidates)
+            if (candidate.getSimpleName().equals(field.getSimpleName()) && cache.elements().hides(candidate, field))
+                return true;
+        return false;
+    }
+
+    /**
+     * The annotations of that type on this type or, if there are none, on the nearest supertype that has some: first
+     * the superclass and its supertypes, then the interfaces and theirs.
+     */
+    List<AnnotationWrapper> hierarchyAnnotations(String annotationType) {
+        List<AnnotationWrapper> result = hierarchyAnnotations.get(annotationType);
+        if (result == null) {
+            result = cache.annotationWrapperBuilder().ofTypeOn(element, annotationType);
+            if (result.isEmpty())
+                for (DeclaredType supertype : directSupertypes()) {
+                    result = declaration(supertype).hierarchyAnnotations(annotationType);
+                    if (!result.isEmpty())
+                        break;
+                }
+            result = unmodifiableList(result);
+            hierarchyAnnotations.put(annotationType, result);
+        }
+        return result;
+    }
+
+    /**
+     * The annotations of that type on that method of this type or, if there are none, on the nearest method it
+     * overrides that has some, in the same order as for {@link #hierarchyAnnotations(String) types}.
+     */
+    List<AnnotationWrapper> hierarchyAnnotations(ExecutableElement method, String annotationType) {
+        Map<String, List<AnnotationWrapper>> map =
+                methodHierarchyAnnotations.computeIfAbsent(method, m -> new HashMap<>());
+        List<AnnotationWrapper> result = map.get(annotationType);
+        if (result == null) {
+            result = cache.annotationWrapperBuilder().ofTypeOn(method, annotationType);
+            if (result.isEmpty())
+                result = overriddenAnnotations(method, annotationType);
+            result = unmodifiableList(result);
+            map.put(annotationType, result);
+        }
+        return result;
+    }
+
+    private List<AnnotationWrapper> overriddenAnnotations(ExecutableElement method, String annotationType) {
+        for (DeclaredType supertype : directSupertypes())
+            for (ExecutableElement candidate : declaration(supertype).allMethods())
+                if (candidate.getSimpleName().equals(method.getSimpleName())
+                        && cache.elements().overrides(method, candidate, element)) {
+                    List<AnnotationWrapper> result = cache.declaration((TypeElement) candidate.getEnclosingElement())
+                            .hierarchyAnnotations(candidate, annotationType);
+                    if (!result.isEmpty())
+                        return result;
+                }
+        return emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + ":" + element.getQualifiedName();
+    }
+}
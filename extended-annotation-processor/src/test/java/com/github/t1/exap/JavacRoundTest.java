@@ -0,0 +1,531 @@
+package com.github.t1.exap;
+
+import static java.lang.annotation.RetentionPolicy.*;
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static java.util.stream.Collectors.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.annotation.*;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.tools.*;
+import javax.tools.JavaCompiler.CompilationTask;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.t1.exap.reflection.*;
+
+/** Runs a {@link Round} in a real javac, for the parts of the model the reflection backend doesn't cover */
+public class JavacRoundTest {
+    @Inherited
+    @Retention(RUNTIME)
+    public @interface Marker {}
+
+    @Retention(RUNTIME)
+    public @interface Nested {}
+
+    @Repeatable(Repeateds.class)
+    @Retention(RUNTIME)
+    public @interface Repeated {
+        String value();
+    }
+
+    @Retention(RUNTIME)
+    public @interface Repeateds {
+        Repeated[] value();
+    }
+
+    @Retention(RUNTIME)
+    public @interface OtherRepeateds {
+        Repeated[] value();
+    }
+
+    public enum Level {
+        LOW,
+        HIGH
+    }
+
+    @Retention(RUNTIME)
+    public @interface Values {
+        Level level();
+
+        Level[] levels();
+
+        Class<?> type();
+
+        Class<?>[] types();
+
+        Repeated[] nested();
+    }
+
+    @Retention(RUNTIME)
+    public @interface Defaulted {
+        String name() default "n";
+
+        int[] numbers() default { 1, 2 };
+
+        Level level() default Level.LOW;
+    }
+
+    @FunctionalInterface
+    interface Probing<T> {
+        T probe(Round round) throws Exception;
+    }
+
+    @SupportedAnnotationTypes("*")
+    private static class Probe<T> extends ExtendedAbstractProcessor {
+        private final Probing<T> probing;
+        private T result;
+
+        private Probe(Probing<T> probing) {
+            this.probing = probing;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Round round) throws Exception {
+            if (round.number() == 0)
+                result = probing.probe(round);
+            return false;
+        }
+    }
+
+    @SupportedAnnotationClasses(value = Nested.class, incremental = Incremental.AGGREGATING)
+    private static class AggregatingProbe<T> extends Probe<T> {
+        private AggregatingProbe(Probing<T> probing) {
+            super(probing);
+        }
+    }
+
+    @SupportedAnnotationClasses(value = Nested.class, skipEmptyRounds = true)
+    private static class Skipping extends ExtendedAbstractProcessor {
+        private final List<Integer> processed = new ArrayList<>();
+        private final List<Integer> over = new ArrayList<>();
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Round round) throws IOException {
+            processed.add(round.number());
+            try (Writer writer = processingEnv.getFiler().createSourceFile("p.Generated").openWriter()) {
+                writer.write("package p; public class Generated {}");
+            }
+            return false;
+        }
+
+        @Override
+        public void processingOver(Round round) {
+            over.add(round.number());
+        }
+    }
+
+    static JavaFileObject source(String className, String code) {
+        URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        return new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+
+    @Rule
+    public TemporaryFolder output = new TemporaryFolder();
+
+    /** Compile the sources without generating class files, and return what the probing found in the first round */
+    <T> T compile(Probing<T> probing, JavaFileObject... sources) {
+        return compile(new Probe<>(probing), emptyList(), sources);
+    }
+
+    <T> T compile(Probe<T> probe, List<String> processorOptions, JavaFileObject... sources) {
+        compile((Processor) probe, processorOptions, sources);
+        return probe.result;
+    }
+
+    /** Compile the sources without generating class files, but with the generated sources in the output folder */
+    List<Diagnostic<? extends JavaFileObject>> compile(Processor processor, List<String> processorOptions,
+            JavaFileObject... sources) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = new ArrayList<>(asList("-proc:only", "-classpath", System.getProperty("java.class.path"),
+                "-d", output.getRoot().toString(), "-s", output.getRoot().toString()));
+        options.addAll(processorOptions);
+        CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, asList(sources));
+        task.setProcessors(singletonList(processor));
+
+        boolean success = task.call();
+
+        assertTrue("compilation failed: " + diagnostics.getDiagnostics(), success);
+        return diagnostics.getDiagnostics();
+    }
+
+    @SuppressWarnings("deprecation")
+    static Type type(Round round, String name) {
+        return Type.of(round.env().getElementUtils().getTypeElement(name).asType(), round);
+    }
+
+    private static List<String> names(List<Type> types) {
+        return types.stream().map(Type::getFullName).collect(toList());
+    }
+
+    @Test
+    public void shouldIndexNestedAnnotationType() {
+        List<String> annotated = compile(round -> names(round.typesAnnotatedWith(Nested.class)),
+                source("p.Annotated", "package p; @com.github.t1.exap.JavacRoundTest.Nested public class Annotated {}"),
+                source("p.Plain", "package p; public class Plain {}"));
+
+        assertEquals(singletonList("p.Annotated"), annotated);
+    }
+
+    @Test
+    public void shouldIndexInheritedAnnotations() {
+        List<String> annotated = compile(round -> names(round.typesAnnotatedWith(Marker.class)),
+                source("p.Base", "package p; @com.github.t1.exap.JavacRoundTest.Marker public class Base {}"),
+                source("p.Sub", "package p; public class Sub extends Base {}"),
+                source("p.Plain", "package p; public class Plain {}"));
+
+        assertThat(annotated).containsOnly("p.Base", "p.Sub");
+    }
+
+    @Test
+    public void shouldIndexMetaAnnotatedTypes() {
+        List<String> annotated = compile(round -> names(round.typesMetaAnnotatedWith(Nested.class)),
+                source("p.Stereotype", "package p; @com.github.t1.exap.JavacRoundTest.Nested\n"
+                        + "public @interface Stereotype {}"),
+                source("p.MetaStereotype", "package p; @Stereotype public @interface MetaStereotype {}"),
+                source("p.Unrelated", "package p; public @interface Unrelated {}"),
+                source("p.Direct", "package p; @com.github.t1.exap.JavacRoundTest.Nested public class Direct {}"),
+                source("p.ViaStereotype", "package p; @Stereotype public class ViaStereotype {}"),
+                source("p.ViaMetaStereotype", "package p; @MetaStereotype public class ViaMetaStereotype {}"),
+                source("p.Other", "package p; @Unrelated public class Other {}"),
+                source("p.Plain", "package p; public class Plain {}"));
+
+        assertThat(annotated).containsOnly("p.Stereotype", "p.MetaStereotype", "p.Direct", "p.ViaStereotype",
+                "p.ViaMetaStereotype");
+        assertThat(annotated).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void shouldIndexSubtypes() {
+        List<List<String>> subtypes = compile(round -> asList(
+                names(round.directSubtypesOf(type(round, "p.Api"))),
+                names(round.subtypesOf(type(round, "p.Api"))),
+                names(round.directSubtypesOf(type(round, "p.Base"))),
+                names(round.subtypesOf(type(round, "p.Base"))),
+                names(round.subtypesOf(Runnable.class)),
+                names(round.subtypesOf(type(round, "p.Sub"))),
+                names(round.subtypesOf(Cloneable.class))),
+                source("p.Api", "package p; public interface Api {}"),
+                source("p.Extended", "package p; public interface Extended extends Api {}"),
+                source("p.Base", "package p; public class Base implements Extended {}"),
+                source("p.Sub", "package p; public class Sub extends Base implements Runnable {\n"
+                        + "    @Override public void run() {}\n"
+                        + "}"),
+                source("p.Outer", "package p; public class Outer {\n"
+                        + "    public static class Inner extends Base {}\n"
+                        + "    public interface NestedApi extends Api {}\n"
+                        + "}"));
+
+        assertThat(subtypes.get(0)).containsOnly("p.Extended", "p.Outer.NestedApi");
+        assertThat(subtypes.get(1))
+                .containsOnly("p.Extended", "p.Base", "p.Sub", "p.Outer.Inner", "p.Outer.NestedApi");
+        assertThat(subtypes.get(2)).containsOnly("p.Sub", "p.Outer.Inner");
+        assertThat(subtypes.get(3)).containsOnly("p.Sub", "p.Outer.Inner");
+        assertEquals(singletonList("p.Sub"), subtypes.get(4));
+        assertEquals(emptyList(), subtypes.get(5));
+        assertEquals(emptyList(), subtypes.get(6));
+    }
+
+    @Test
+    public void shouldPartitionStaticAndInstanceMembers() {
+        List<List<String>> members = compile(round -> {
+            Type type = type(round, "p.Members");
+            return asList(type.getMethods().stream().map(Method::getName).collect(toList()),
+                    type.getStaticMethods().stream().map(Method::getName).collect(toList()),
+                    type.getFields().stream().map(Field::getName).collect(toList()),
+                    type.getStaticFields().stream().map(Field::getName).collect(toList()));
+        }, source("p.Members", "package p; public class Members {\n"
+                + "    public static final String CONSTANT = \"c\";\n"
+                + "    private int field;\n"
+                + "    static long staticField;\n"
+                + "    public Members() {}\n"
+                + "    public void method() {}\n"
+                + "    public static void staticMethod() {}\n"
+                + "    int otherMethod(int i) { return i; }\n"
+                + "    static { staticField = 1; }\n"
+                + "    class Inner {}\n"
+                + "    enum Nested { A }\n"
+                + "}"));
+
+        assertEquals(asList("method", "otherMethod"), members.get(0));
+        assertEquals(singletonList("staticMethod"), members.get(1));
+        assertEquals(singletonList("field"), members.get(2));
+        assertEquals(asList("CONSTANT", "staticField"), members.get(3));
+    }
+
+    @Test
+    public void shouldCollectAllMembersWithoutOverriddenMethodsAndHiddenFields() {
+        List<List<String>> members = compile(round -> {
+            Type type = type(round, "p.Child");
+            return asList(type.getAllMethods().stream()
+                    .filter(method -> !method.getDeclaringType().getFullName().equals("java.lang.Object"))
+                    .map(method -> method.getDeclaringType().getSimpleName() + "." + method.getName())
+                    .collect(toList()),
+                    type.getAllFields().stream()
+                            .map(field -> field.getDeclaringType().getSimpleName() + "." + field.getName() + ":"
+                                    + field.getType().getSimpleName())
+                            .collect(toList()));
+        }, source("p.Api", "package p; public interface Api {\n"
+                + "    void run();\n"
+                + "    default String greet() { return \"hi\"; }\n"
+                + "}"),
+                source("p.Parent", "package p; public class Parent {\n"
+                        + "    int hidden;\n"
+                        + "    long inherited;\n"
+                        + "    public void method() {}\n"
+                        + "    public void inherited() {}\n"
+                        + "}"),
+                source("p.Child", "package p; public class Child extends Parent implements Api {\n"
+                        + "    String hidden;\n"
+                        + "    @Override public void method() {}\n"
+                        + "    @Override public void run() {}\n"
+                        + "}"));
+
+        assertThat(members.get(0)).containsOnly("Child.method", "Child.run", "Parent.inherited", "Api.greet")
+                .doesNotHaveDuplicates();
+        assertEquals(asList("Child.hidden:String", "Parent.inherited:long"), members.get(1));
+    }
+
+    @Test
+    public void shouldReturnCachedWrappersForAnnotatedMembers() {
+        List<Boolean> same = compile(round -> {
+            Type type = type(round, "p.Annotated");
+            Method method = type.getMethod("method");
+            return asList(round.methodsAnnotatedWith(Nested.class).get(0) == method,
+                    round.fieldsAnnotatedWith(Nested.class).get(0) == type.getField("field"),
+                    round.parametersAnnotatedWith(Nested.class).get(0) == method.getParameter(0));
+        }, source("p.Annotated", "package p; import com.github.t1.exap.JavacRoundTest.Nested;\n"
+                + "public class Annotated {\n"
+                + "    @Nested String field;\n"
+                + "    @Nested void method(@Nested String parameter) {}\n"
+                + "}"));
+
+        assertEquals(asList(true, true, true), same);
+    }
+
+    @Test
+    public void shouldSkipEmptyRounds() {
+        Skipping processor = new Skipping();
+
+        List<Diagnostic<? extends JavaFileObject>> diagnostics =
+                compile(processor, singletonList("-Aexap.instrument"), ANNOTATED);
+
+        assertEquals(singletonList(0), processor.processed);
+        assertEquals(singletonList(2), processor.over);
+        assertThat(diagnostics).hasSize(1);
+        String summary = diagnostics.get(0).getMessage(null).replaceAll("\\s+", " ");
+        assertThat(summary).contains(" round 0: wall ", "; process: wall ", "; skipped round 2: wall ")
+                .matches(".* round 1: wall [^;]*; skipped .*");
+    }
+
+    @Test
+    public void shouldUnwrapOnlyTheRepeatableContainer() {
+        List<List<String>> annotations = compile(round -> asList(
+                annotations(type(round, "p.First")), annotations(type(round, "p.Second"))),
+                source("p.First", "package p; import com.github.t1.exap.JavacRoundTest.*;\n"
+                        + "@Repeated(\"a\") @Repeated(\"b\") @OtherRepeateds(@Repeated(\"c\"))\n"
+                        + "public class First {}"),
+                source("p.Second", "package p; import com.github.t1.exap.JavacRoundTest.*;\n"
+                        + "@OtherRepeateds({}) @Repeateds(@Repeated(\"d\"))\n"
+                        + "public class Second {}"));
+
+        assertEquals(asList("Repeated(a)", "Repeated(b)", "OtherRepeateds"), annotations.get(0));
+        assertEquals(asList("OtherRepeateds", "Repeated(d)"), annotations.get(1));
+    }
+
+    private static List<String> annotations(Type type) {
+        return type.getAnnotationWrappers().stream().map(annotation -> {
+            String name = annotation.getAnnotationType().getSimpleName();
+            return name.equals("Repeated") ? name + "(" + annotation.getStringProperty("value") + ")" : name;
+        }).collect(toList());
+    }
+
+    @Test
+    public void shouldFindAnnotationsInTheHierarchy() {
+        List<List<String>> annotations = compile(round -> {
+            List<List<String>> result = new ArrayList<>();
+            for (String name : asList("p.Own", "p.Sub", "p.Impl", "p.Diamond")) {
+                Type type = type(round, name);
+                result.add(values(type.findAnnotationWrappers(Repeated.class)));
+                result.add(values(type.getMethod("method").findAnnotationWrappers(Repeated.class)));
+            }
+            return result;
+        }, source("p.Root", "package p; import com.github.t1.exap.JavacRoundTest.Repeated;\n"
+                + "@Repeated(\"root\") public interface Root { @Repeated(\"root\") void method(); }"),
+                source("p.Left", "package p; public interface Left extends Root {}"),
+                source("p.Right", "package p; public interface Right extends Root {}"),
+                source("p.Base", "package p; import com.github.t1.exap.JavacRoundTest.Repeated;\n"
+                        + "@Repeated(\"base1\") @Repeated(\"base2\") public class Base {\n"
+                        + "    @Repeated(\"base\") public void method() {}\n"
+                        + "}"),
+                source("p.Own", "package p; import com.github.t1.exap.JavacRoundTest.Repeated;\n"
+                        + "@Repeated(\"own\") public class Own extends Base {\n"
+                        + "    @Override @Repeated(\"own\") public void method() {}\n"
+                        + "}"),
+                source("p.Sub", "package p; public class Sub extends Base implements Root {\n"
+                        + "    @Override public void method() {}\n"
+                        + "}"),
+                source("p.Impl", "package p; public class Impl implements Root {\n"
+                        + "    @Override public void method() {}\n"
+                        + "}"),
+                source("p.Diamond", "package p; public class Diamond implements Left, Right {\n"
+                        + "    @Override public void method() {}\n"
+                        + "}"));
+
+        assertEquals(asList( //
+                singletonList("own"), singletonList("own"), //
+                asList("base1", "base2"), singletonList("base"), //
+                singletonList("root"), singletonList("root"), //
+                singletonList("root"), singletonList("root")), annotations);
+    }
+
+    private static List<String> values(List<AnnotationWrapper> annotations) {
+        return annotations.stream().map(annotation -> annotation.getStringProperty("value")).collect(toList());
+    }
+
+    @Test
+    public void shouldSkipUnchangedResources() {
+        Probing<Integer> probing = round -> writeResource(round).getSkipped();
+
+        compile(new Probe<>(probing), singletonList("-Aexap.skipUnchanged"), ANNOTATED);
+        int skipped = compile(new Probe<>(probing), singletonList("-Aexap.skipUnchanged"), ANNOTATED);
+
+        assertEquals(1, skipped);
+    }
+
+    @Test
+    public void shouldNotSkipUnchangedResourcesOfIncrementalProcessors() {
+        Probing<Integer> probing = round -> writeResource(round).getWritten();
+
+        compile(new AggregatingProbe<>(probing), singletonList("-Aexap.skipUnchanged"), ANNOTATED);
+        int written = compile(new AggregatingProbe<>(probing), singletonList("-Aexap.skipUnchanged"), ANNOTATED);
+
+        assertEquals(1, written);
+    }
+
+    @Test
+    public void shouldSnapshotAnnotationValues() {
+        Snapshot snapshot = compile(round -> Snapshot.of(singletonList(type(round, "p.Valued"))),
+                source("p.Valued", "package p; import com.github.t1.exap.JavacRoundTest.*;\n"
+                        + "@Values(level = Level.HIGH, levels = { Level.LOW, Level.HIGH },\n"
+                        + "        type = String.class, types = { java.util.List.class, Valued.class },\n"
+                        + "        nested = { @Repeated(\"x\"), @Repeated(\"y\") })\n"
+                        + "public class Valued {}"));
+
+        // the compiler is done, so the snapshot must not need it any more
+        AnnotationWrapper values = snapshot.getTypes().get(0).getAnnotationWrapper(Values.class);
+        assertEquals(AnnotationPropertyType.ENUM, values.getPropertyType("level"));
+        assertEquals("HIGH", values.getEnumProperty("level"));
+        assertEquals(asList("LOW", "HIGH"), values.getEnumProperties("levels"));
+        assertEquals(AnnotationPropertyType.CLASS, values.getPropertyType("types"));
+        assertEquals("java.lang.String", values.getTypeProperty("type").getFullName());
+        assertEquals(asList("java.util.List", "p.Valued"), names(values.getTypeProperties("types")));
+        assertEquals(AnnotationPropertyType.ANNOTATION, values.getPropertyType("nested"));
+        assertEquals(asList("x", "y"), values.getAnnotationProperties("nested").stream()
+                .map(nested -> nested.getStringProperty("value")).collect(toList()));
+    }
+
+    @Test
+    public void shouldRegenerateCachedOutputWhenReferencedTypeChanges() throws IOException {
+        List<String> options = singletonList("-Aexap.cacheDir=" + output.newFolder("cache"));
+        Probing<Boolean> probing = round -> {
+            AtomicBoolean generated = new AtomicBoolean();
+            round.cached(type(round, "p.Annotated"), () -> {
+                generated.set(true);
+                writeResource(round);
+            });
+            return generated.get();
+        };
+        JavaFileObject annotated = source("p.Annotated", "package p;\n"
+                + "@com.github.t1.exap.JavacRoundTest.Nested public class Annotated { Referenced referenced; }");
+
+        boolean first = compile(new Probe<>(probing), options, annotated,
+                source("p.Referenced", "package p; public class Referenced { int a; }"));
+        boolean unchanged = compile(new Probe<>(probing), options, annotated,
+                source("p.Referenced", "package p; public class Referenced { int a; }"));
+        boolean changed = compile(new Probe<>(probing), options, annotated,
+                source("p.Referenced", "package p; public class Referenced { int a; String b; }"));
+
+        assertEquals(asList(true, false, true), asList(first, unchanged, changed));
+    }
+
+    @Test
+    public void shouldRegenerateCachedOutputWhenIndirectlyTouchedTypeChanges() throws IOException {
+        List<String> options = singletonList("-Aexap.cacheDir=" + output.newFolder("cache"));
+        Probing<List<String>> probing = round -> {
+            List<String> fields = new ArrayList<>();
+            Type type = type(round, "p.Annotated");
+            round.cached(type, () -> {
+                Type deep = type.getField("referenced").getType().getField("deep").getType();
+                deep.getFields().forEach(field -> fields.add(field.getName()));
+                writeResource(round);
+            });
+            return fields;
+        };
+        JavaFileObject annotated = source("p.Annotated", "package p;\n"
+                + "@com.github.t1.exap.JavacRoundTest.Nested public class Annotated { Referenced referenced; }");
+        JavaFileObject referenced = source("p.Referenced", "package p; public class Referenced { Deep deep; }");
+
+        List<String> first = compile(new Probe<>(probing), options, annotated, referenced,
+                source("p.Deep", "package p; public class Deep { int a; }"));
+        List<String> unchanged = compile(new Probe<>(probing), options, annotated, referenced,
+                source("p.Deep", "package p; public class Deep { int a; }"));
+        List<String> changed = compile(new Probe<>(probing), options, annotated, referenced,
+                source("p.Deep", "package p; public class Deep { int a; String b; }"));
+
+        assertEquals(singletonList("a"), first);
+        assertEquals(emptyList(), unchanged);
+        assertEquals(asList("a", "b"), changed);
+    }
+
+    @Test
+    public void shouldResolveAnnotationValuesWithDefaults() {
+        List<Object> values = compile(round -> {
+            AnnotationWrapper defaulted = type(round, "p.Defaulted").getAnnotationWrapper(Defaulted.class);
+            Throwable unknown = catchThrowable(() -> defaulted.getProperty("unknown"));
+            return asList(defaulted.getStringProperty("name"), defaulted.getStringProperty("name"),
+                    defaulted.getIntProperties("numbers"), defaulted.getIntArrayProperty("numbers").length,
+                    defaulted.getEnumProperty("level"), defaulted.getPropertyType("level"), unknown.getMessage());
+        }, source("p.Defaulted", "package p; @com.github.t1.exap.JavacRoundTest.Defaulted(name = \"x\")\n"
+                + "public class Defaulted {}"));
+
+        assertEquals(asList("x", "x", asList(1, 2), 2, "LOW", AnnotationPropertyType.ENUM, "no property \"unknown\""
+                + " found in annotation @com.github.t1.exap.JavacRoundTest.Defaulted(name=\"x\")"), values);
+    }
+
+    private static final JavaFileObject ANNOTATED =
+            source("p.Annotated", "package p; @com.github.t1.exap.JavacRoundTest.Nested public class Annotated {}");
+
+    private static GeneratedFiles writeResource(Round round) throws IOException {
+        try (Writer writer = round.createResource("p", "resource.txt", type(round, "p.Annotated")).openWriter()) {
+            writer.write("content");
+        }
+        return round.files();
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.t1.exap.generator;
+
+import static com.github.t1.exap.reflection.ReflectionProcessingEnvironment.*;
+import static org.assertj.core.api.StrictAssertions.*;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class CodeWriterTest {
+    private static class RecordingWriter extends StringWriter {
+        private int writes;
+        private int flushes;
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+            ++writes;
+            super.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+            ++flushes;
+        }
+    }
+
+    private final RecordingWriter target = new RecordingWriter();
+    private final CodeWriter out = new CodeWriter(target);
+
+    @Test
+    public void shouldIndentNestedLines() {
+        out.println("class Foo {").indent();
+        out.print("void bar() ").println("{").indent();
+        out.print("baz(").print('1').println(");");
+        out.println();
+        out.println("qux();").outdent();
+        out.println("}").outdent();
+        out.print("}");
+        out.flush();
+
+        assertEquals("class Foo {\n"
+                + "    void bar() {\n"
+                + "        baz(1);\n"
+                + "\n"
+                + "        qux();\n"
+                + "    }\n"
+                + "}", target.toString());
+    }
+
+    @Test
+    public void shouldIndentOnlyTheFirstLineOfEmbeddedLineBreaks() {
+        out.indent().println("first\nsecond").print("third");
+        out.flush();
+
+        assertEquals("    first\nsecond\n    third", target.toString());
+    }
+
+    @Test
+    public void shouldPrintPartOfText() {
+        out.indent().print("xxfooxx", 2, 5).print("bar", 1, 1).println();
+        out.flush();
+
+        assertEquals("    foo\n", target.toString());
+    }
+
+    @Test
+    public void shouldFailToOutdentBelowZero() {
+        Throwable thrown = catchThrowable(() -> out.indent().outdent().outdent());
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class).hasMessage("can't outdent below level 0");
+    }
+
+    @Test
+    public void shouldWriteOnlyWhenFlushed() {
+        out.println("foo").print(new StringBuilder("bar"));
+
+        assertEquals("", target.toString());
+        assertEquals(0, target.flushes);
+
+        out.flush();
+
+        assertEquals("foo\nbar", target.toString());
+        assertEquals(1, target.writes);
+        assertEquals(1, target.flushes);
+    }
+
+    @Test
+    public void shouldWriteThroughWhenBufferIsFull() {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            out.print("line ").print(Integer.toString(i)).println();
+            expected.append("line ").append(i).append('\n');
+        }
+
+        assertThat(target.writes).isGreaterThan(0);
+        assertEquals(0, target.flushes);
+
+        out.flush();
+
+        assertEquals(expected.toString(), target.toString());
+        assertEquals(1, target.flushes);
+    }
+
+    @Test
+    public void shouldPrintToString() {
+        String string = CodeWriter.toString(out -> out.indent().println("foo").outdent().print("bar"));
+
+        assertEquals("    foo\nbar", string);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void shouldPrintDeprecatedJavaDocWithIndent() {
+        StringWriter string = new StringWriter();
+
+        new JavaDocGenerator("  ", "foo\nbar").print(new PrintWriter(string));
+
+        assertEquals("  /**\n   * foo\n   * bar\n   */\n", string.toString());
+    }
+
+    @Test
+    public void shouldFailToPrintConstructorWithoutBody() {
+        TypeGenerator type = new TypeGenerator(LoggerFactory.getLogger(getClass()), ENV.type(getClass()).getPackage(),
+                "Foo");
+        type.addConstructor();
+
+        Throwable thrown = catchThrowable(() -> CodeWriter.toString(type::print));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class).hasMessage("no body for constructor of Foo");
+    }
+}
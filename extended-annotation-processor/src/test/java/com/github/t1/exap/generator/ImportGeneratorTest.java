@@ -0,0 +1,142 @@
+package com.github.t1.exap.generator;
+
+import static com.github.t1.exap.reflection.ReflectionProcessingEnvironment.*;
+import static java.util.Arrays.*;
+import static java.util.Collections.*;
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+
+import javax.annotation.processing.Processor;
+import javax.tools.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+
+import com.github.t1.exap.Round;
+
+import junit.framework.TestCase;
+
+public class ImportGeneratorTest {
+    @Rule
+    public TemporaryFolder output = new TemporaryFolder();
+
+    private final ImportGenerator imports = new ImportGenerator("pkg", "Generated");
+
+    private String add(Class<?> type) {
+        return imports.add(ENV.type(type));
+    }
+
+    private String print() {
+        return CodeWriter.toString(imports::print);
+    }
+
+    @Test
+    public void shouldQualifyTypeWithSameSimpleNameFromOtherPackage() {
+        assertEquals("Date", add(java.util.Date.class));
+        assertEquals("java.sql.Date", add(java.sql.Date.class));
+        assertEquals("Date", add(java.util.Date.class));
+        assertEquals("java.sql.Date", add(java.sql.Date.class));
+
+        assertEquals("import java.util.Date;\n\n", print());
+    }
+
+    @Test
+    public void shouldNotImportJavaLang() {
+        assertEquals("String", add(String.class));
+        assertEquals("String", add(String.class));
+
+        assertEquals("", print());
+    }
+
+    @Test
+    public void shouldQualifyTypeWithSimpleNameOfGeneratedType() {
+        ImportGenerator imports = new ImportGenerator("pkg", "List");
+
+        assertEquals("java.util.List", imports.add(ENV.type(List.class)));
+        assertEquals("", CodeWriter.toString(imports::print));
+    }
+
+    @Test
+    public void shouldImportEveryTypeWithSingleTypeImport() {
+        add(java.util.Date.class);
+        add(List.class);
+        add(Map.class);
+        add(java.sql.Date.class);
+
+        assertEquals("import java.util.Date;\nimport java.util.List;\nimport java.util.Map;\n\n", print());
+    }
+
+    @Test
+    public void shouldCompileTypesWithSimpleNamesAlsoInOtherImportedPackages() throws IOException {
+        String source = "package pkg;\n"
+                + "\n"
+                + "public class Generated {\n"
+                + "    " + add(List.class) + "<String> list;\n"
+                + "    " + add(Map.class) + "<String, String> map;\n"
+                + "    " + add(Color.class) + " color;\n"
+                + "    " + add(Point.class) + " point;\n"
+                + "}\n";
+        source = source.replace("package pkg;\n\n", "package pkg;\n\n" + print());
+
+        assertEquals("package pkg;\n"
+                + "\n"
+                + "import java.awt.Color;\n"
+                + "import java.awt.Point;\n"
+                + "import java.util.List;\n"
+                + "import java.util.Map;\n"
+                + "\n"
+                + "public class Generated {\n"
+                + "    List<String> list;\n"
+                + "    Map<String, String> map;\n"
+                + "    Color color;\n"
+                + "    Point point;\n"
+                + "}\n", source);
+        assertCompiles("pkg.Generated", source);
+    }
+
+    private void assertCompiles(String className, String source) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        URI uri = URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension);
+        JavaFileObject file = new SimpleJavaFileObject(uri, JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        boolean success = compiler.getTask(null, null, diagnostics,
+                asList("-proc:none", "-d", output.getRoot().toString()), null, singletonList(file)).call();
+
+        assertTrue("compilation failed: " + diagnostics.getDiagnostics(), success);
+    }
+
+    @Test
+    public void shouldGroupImports() {
+        add(TestCase.class);
+        add(Round.class);
+        add(Logger.class);
+        add(Test.class);
+        add(Processor.class);
+        add(List.class);
+
+        assertEquals(""
+                + "import java.util.List;\n"
+                + "\n"
+                + "import javax.annotation.processing.Processor;\n"
+                + "\n"
+                + "import org.junit.Test;\n"
+                + "import org.slf4j.Logger;\n"
+                + "\n"
+                + "import com.github.t1.exap.Round;\n"
+                + "\n"
+                + "import junit.framework.TestCase;\n"
+                + "\n", print());
+    }
+}
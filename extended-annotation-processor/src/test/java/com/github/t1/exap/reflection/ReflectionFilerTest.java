@@ -1,16 +1,32 @@
 package com.github.t1.exap.reflection;
 
 import static com.github.t1.exap.reflection.ReflectionProcessingEnvironment.*;
+import static java.util.Collections.*;
+import static java.util.stream.Collectors.*;
 import static javax.tools.StandardLocation.*;
 import static org.assertj.core.api.StrictAssertions.*;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.junit.Assert.assertEquals;
 
 import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import javax.tools.StandardLocation;
 
 import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.t1.exap.Incremental;
+import com.github.t1.exap.generator.GenerationBatch;
 
 public class ReflectionFilerTest {
+    @Rule
+    public TemporaryFolder cacheDir = new TemporaryFolder();
+
     @After
     public void clearMessages() {
         ENV.getCreatedResources().clear();
@@ -30,4 +46,152 @@ public class ReflectionFilerTest {
         }
         assertCreatedFile("bar", CLASS_OUTPUT, getClass().getPackage().getName(), "foo");
     }
+
+    @Test
+    public void shouldReplayCachedOutput() throws Exception {
+        class Pojo {}
+        Type type = ENV.type(Pojo.class);
+        AtomicInteger generations = new AtomicInteger();
+        OutputCache.Generation generation = () -> {
+            generations.incrementAndGet();
+            try (Writer writer = type.getPackage().createResource("cached").openWriter()) {
+                writer.write("bar");
+            }
+        };
+
+        OutputCache firstBuild = new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV);
+        firstBuild.generate(type.round(), type, generation);
+        ENV.getCreatedResources().clear();
+        OutputCache secondBuild = new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV);
+        secondBuild.generate(type.round(), type, generation);
+
+        assertThat(generations.get()).isEqualTo(1);
+        assertThat(firstBuild.getMisses()).isEqualTo(1);
+        assertThat(secondBuild.getHits()).isEqualTo(1);
+        assertCreatedFile("bar", CLASS_OUTPUT, getClass().getPackage().getName(), "cached");
+    }
+
+    @Test
+    public void shouldNotCacheEmptyOutput() throws Exception {
+        class Pojo {}
+        Type type = ENV.type(Pojo.class);
+        AtomicInteger generations = new AtomicInteger();
+        OutputCache.Generation generation = generations::incrementAndGet;
+
+        new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV).generate(type.round(), type, generation);
+        OutputCache secondBuild = new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV);
+        secondBuild.generate(type.round(), type, generation);
+
+        assertThat(generations.get()).isEqualTo(2);
+        assertThat(secondBuild.getMisses()).isEqualTo(1);
+        assertThat(cacheDir.getRoot().toPath().resolve(getClass().getName()).toFile().list()).isNull();
+    }
+
+    @Test
+    public void shouldReplayBatchClosedWithinGeneration() throws Exception {
+        class Pojo {}
+        Type type = ENV.type(Pojo.class);
+        OutputCache.Generation generation = () -> {
+            try (GenerationBatch batch = type.round().openGenerationBatch()) {
+                type.getPackage().openTypeGenerator("CachedBatch", batch);
+            }
+        };
+
+        new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV).generate(type.round(), type, generation);
+        ENV.getCreatedResources().clear();
+        OutputCache secondBuild = new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV);
+        secondBuild.generate(type.round(), type, () -> fail("expected a replay"));
+
+        assertThat(secondBuild.getHits()).isEqualTo(1);
+        assertCreatedFile(""
+                + "package com.github.t1.exap.reflection;\n"
+                + "\n"
+                + "public class CachedBatch {\n"
+                + "}\n", SOURCE_OUTPUT, getClass().getPackage().getName(), "CachedBatch");
+    }
+
+    @Test
+    public void shouldEvictUnusedCacheEntries() throws Exception {
+        Path dir = cacheDir.getRoot().toPath().resolve(getClass().getName());
+        Files.createDirectories(dir);
+        Path unused = Files.write(dir.resolve("unused"), new byte[0]);
+        Files.setLastModifiedTime(unused, FileTime.from(Instant.now().minus(OutputCache.MAX_AGE).minusSeconds(60)));
+        Path used = Files.write(dir.resolve("used"), new byte[0]);
+        OutputCache cache = new OutputCache(cacheDir.getRoot().toPath(), getClass(), ENV);
+
+        cache.evict(ENV.type(getClass()).log());
+
+        assertThat(cache.getEvicted()).isEqualTo(1);
+        assertThat(Files.exists(unused)).isFalse();
+        assertThat(Files.exists(used)).isTrue();
+    }
+
+    @Test
+    public void shouldRequireOneOriginatingElementForIsolatingProcessors() throws IOException {
+        class Pojo {}
+        Type type = ENV.type(Pojo.class);
+        GeneratedFiles files = new GeneratedFiles(ENV, Incremental.ISOLATING, null);
+
+        Throwable thrown = catchThrowable(() -> files.createResource("pkg", "foo"));
+        try (Writer writer = files.createResource("pkg", "bar", type).openWriter()) {
+            writer.write("baz");
+        }
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("exactly one originating element, but foo has 0");
+        assertCreatedFile("baz", CLASS_OUTPUT, "pkg", "bar");
+    }
+
+    @Test
+    public void shouldMeasureGeneratedFiles() throws IOException {
+        Instrumentation instrumentation = new Instrumentation(true);
+        GeneratedFiles files = new GeneratedFiles(ENV, Incremental.NONE, instrumentation);
+
+        try (Writer writer = files.createResource("pkg", "measured").openWriter()) {
+            writer.write("bar");
+        }
+        instrumentation.round(0, instrumentation.start().stop());
+
+        assertEquals(singleton("pkg/measured"), instrumentation.getFiles().keySet());
+        assertThat(instrumentation.getFiles().get("pkg/measured").getWallNanos()).isGreaterThan(0);
+        assertThat(instrumentation.summary("MyProcessor")).startsWith("instrumentation of MyProcessor: 1 rounds: wall ")
+                .contains("\n  files: 1: wall ", "\n    pkg/measured: wall ");
+        assertThat(instrumentation.json("MyProcessor")).contains("\"processor\": \"MyProcessor\"",
+                "\"rounds\": {\n    \"0\": {\"wallNanos\": ", "\"pkg/measured\": {\"wallNanos\": ");
+        assertCreatedFile("bar", CLASS_OUTPUT, "pkg", "measured");
+    }
+
+    @Test
+    public void shouldWriteBatchInOrderOfOpening() {
+        Package pkg = ENV.type(getClass()).getPackage();
+
+        try (GenerationBatch batch = pkg.round().openGenerationBatch()) {
+            for (int i = 0; i < 20; i++)
+                pkg.openTypeGenerator("Batched" + i, batch).addField("value").type(ENV.type(String.class));
+        }
+
+        assertEquals(IntStream.range(0, 20).mapToObj(i -> "Batched" + i).collect(toList()),
+                ENV.getCreatedResources().stream().map(file -> file.relativeName.toString()).collect(toList()));
+        assertCreatedFile(""
+                + "package com.github.t1.exap.reflection;\n"
+                + "\n"
+                + "public class Batched7 {\n"
+                + "    private String value;\n"
+                + "\n"
+                + "}\n", SOURCE_OUTPUT, pkg.getName(), "Batched7");
+    }
+
+    @Test
+    public void shouldRethrowFirstFailureOfBatchAndWriteNothing() {
+        Package pkg = ENV.type(getClass()).getPackage();
+        GenerationBatch batch = pkg.round().openGenerationBatch();
+        for (int i = 0; i < 20; i++)
+            pkg.openTypeGenerator("Batched" + i, batch).addMethod("method" + i);
+
+        Throwable thrown = catchThrowable(batch::close);
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class).hasMessage("no return type for method method0");
+        assertEquals(emptyList(), ENV.getCreatedResources());
+        assertThat(batch.size()).isEqualTo(0);
+    }
 }
@@ -1,6 +1,7 @@
 package com.github.t1.exap.reflection;
 
 import static com.github.t1.exap.reflection.ReflectionProcessingEnvironment.*;
+import static java.util.Collections.*;
 import static javax.tools.Diagnostic.Kind.*;
 import static org.assertj.core.api.Assertions.*;
 
@@ -119,4 +120,20 @@ public class ReflectionMessagesTest {
 
         assertMessage(annotation, WARNING, "foo");
     }
+
+    @Test
+    public void shouldQueueSnapshotMessagesUntilPrinted() {
+        class Pojo {
+            @SuppressWarnings("unused")
+            String field;
+        }
+        Field field = ENV.type(Pojo.class).getField("field");
+        Snapshot snapshot = Snapshot.of(singletonList(ENV.type(Pojo.class)));
+
+        snapshot.getTypes().get(0).getField("field").warning("foo");
+
+        assertThat(ENV.getMessages()).isEmpty();
+        snapshot.printMessages();
+        assertMessage(field, WARNING, "foo");
+    }
 }
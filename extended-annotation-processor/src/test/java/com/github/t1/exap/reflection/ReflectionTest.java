@@ -6,6 +6,7 @@ import static com.github.t1.exap.reflection.ReflectionTest.FooNum.*;
 import static java.lang.annotation.RetentionPolicy.*;
 import static java.util.Arrays.*;
 import static java.util.Collections.*;
+import static java.lang.reflect.Modifier.isStatic;
 import static java.util.stream.Collectors.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.StrictAssertions.*;
@@ -15,12 +16,14 @@ import static org.junit.Assert.*;
 
 import java.lang.annotation.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
 import org.junit.Test;
 
-import com.github.t1.exap.JavaDoc;
+import com.github.t1.exap.*;
+import com.github.t1.exap.generator.GenerationBatch;
 import com.github.t1.exap.reflection.ReflectionTest.Container.Nested;
 
 public class ReflectionTest {
@@ -117,6 +120,52 @@ public class ReflectionTest {
     }
 
 
+    @Retention(RUNTIME)
+    public @interface Marker {}
+
+    @Marker
+    @Retention(RUNTIME)
+    public @interface Stereotype {}
+
+    @Stereotype
+    @Retention(RUNTIME)
+    public @interface SuperStereotype {}
+
+    @SuperStereotype
+    public static class Stereotyped {}
+
+    public interface MultiView {
+        boolean booly();
+
+        Type classy();
+
+        int inty();
+
+        String stringy();
+
+        FooNum enumy();
+
+        A annoty();
+    }
+
+    public interface MultiAView {
+        List<Boolean> booly();
+
+        List<Type> classy();
+
+        int[] inty();
+
+        String[] stringy();
+
+        FooNum[] enumy();
+
+        List<AnnotationWrapper> annoty();
+    }
+
+    public interface ClassView {
+        Class<?> classy();
+    }
+
     @Retention(RUNTIME)
     public @interface FooNumA {
         FooNum value();
@@ -181,6 +230,39 @@ public class ReflectionTest {
         }
     }
 
+    @B("greeter")
+    public interface Greeter {
+        default String greet() {
+            return "hi";
+        }
+
+        @A("name")
+        String name();
+    }
+
+    @B("base")
+    public static class Base implements Greeter {
+        String field;
+        private String secret;
+
+        @Override
+        public String name() {
+            return "base";
+        }
+
+        void baseOnly() {}
+    }
+
+    public static class Sub extends Base {
+        String field;
+        private String secret;
+
+        @Override
+        public String name() {
+            return "sub";
+        }
+    }
+
     private final Type type = ENV.type(Pojo.class);
 
     @Test
@@ -289,6 +371,15 @@ public class ReflectionTest {
         assertTrue(ENV.type(Double.class).isFloating());
         assertTrue(ENV.type(double.class).isFloating());
 
+        assertFalse(ENV.type(void.class).isPrimitive());
+        assertTrue(ENV.type(int.class).isPrimitive());
+        assertFalse(ENV.type(Integer.class).isPrimitive());
+
+        assertTrue(ENV.type(ArrayList.class).isCollection());
+        assertFalse(ENV.type(ArrayList.class).isMap());
+        assertTrue(ENV.type(HashMap.class).isMap());
+        assertFalse(ENV.type(HashMap.class).isCollection());
+
         assertEquals(ENV.type(String.class), ENV.type(String[].class).elementType());
 
         assertEquals(ENV.type(Number.class), ENV.type(Integer.class).getSuperType());
@@ -316,6 +407,9 @@ public class ReflectionTest {
         assertTrue(type.isAnnotated(JavaDoc.class));
         assertEquals("s", JavaDoc.SUMMARY.apply(type.getAnnotation(JavaDoc.class)));
         assertEquals("s. v", type.getAnnotation(JavaDoc.class).value());
+        assertEquals("s", type.getJavaDoc().getSummary());
+        assertSame(type.getJavaDoc(), type.getJavaDoc());
+        assertNull(ENV.type(Sub.class).getJavaDoc());
 
         List<AnnotationWrapper> wrappers = type.getAnnotationWrappers();
         assertEquals(2, wrappers.size());
@@ -344,6 +438,21 @@ public class ReflectionTest {
         assertEnumField(fields.get(3));
     }
 
+    @Test
+    public void shouldLookUpMembersByName() {
+        assertTrue(type.hasField("map"));
+        assertFalse(type.hasField("CONSTANT")); // static
+        assertEquals("map", type.getField("map").getName());
+        assertThat(catchThrowable(() -> type.getField("unknown"))).hasMessageStartingWith("field not found: unknown");
+
+        assertTrue(type.hasMethod("method1"));
+        assertFalse(type.hasMethod("constant")); // static
+        assertEquals(1, type.getMethods("method1").size());
+        assertSame(type.getMethod("method1"), type.getMethods("method1").get(0));
+        assertTrue(type.getMethods("unknown").isEmpty());
+        assertThat(catchThrowable(() -> type.getMethod("unknown"))).hasMessageStartingWith("method not found: unknown");
+    }
+
     private void assertBoolField(Field boolField) {
         assertEquals("bool", boolField.getName());
         assertEquals("boolean", boolField.getType().getSimpleName());
@@ -475,6 +584,8 @@ public class ReflectionTest {
         assertEquals(asList(7), wrapper.getIntProperties("inty"));
         assertEquals(8, wrapper.getLongProperty("longy"));
         assertEquals(asList((long) 8), wrapper.getLongProperties("longy"));
+        assertArrayEquals(new int[] { 7 }, wrapper.getIntArrayProperty("inty"));
+        assertArrayEquals(new long[] { 8 }, wrapper.getLongPropertyStream("longy").toArray());
         assertEquals(9, wrapper.getShortProperty("shorty"));
         assertEquals(asList((short) 9), wrapper.getShortProperties("shorty"));
         assertEquals("s", wrapper.getStringProperty("stringy"));
@@ -654,6 +765,13 @@ public class ReflectionTest {
         assertEquals(asList(8L, 9L), wrapper.getLongProperties("longy"));
         assertEquals(asList((short) 9, (short) 8), wrapper.getShortProperties("shorty"));
         assertEquals(asList("s", "t"), wrapper.getStringProperties("stringy"));
+        assertArrayEquals(new boolean[] { false, true }, wrapper.getBooleanArrayProperty("booly"));
+        assertArrayEquals(new char[] { 0x21, 0x22 }, wrapper.getCharArrayProperty("chary"));
+        assertArrayEquals(new int[] { 7, 8 }, wrapper.getIntArrayProperty("inty"));
+        assertEquals(15, wrapper.getIntPropertyStream("inty").sum());
+        assertArrayEquals(new double[] { 3.4d, 4.3d }, wrapper.getDoublePropertyStream("doubly").toArray(), 0.01d);
+        wrapper.getIntArrayProperty("inty")[0] = 0;
+        assertArrayEquals(new int[] { 7, 8 }, wrapper.getIntArrayProperty("inty"));
         assertEquals(asList("Y", "Z"), wrapper.getEnumProperties("enumy"));
         assertEquals(2, wrapper.getAnnotationProperties("annoty").size());
         assertEquals(multia.annoty()[0].value(),
@@ -901,6 +1019,296 @@ public class ReflectionTest {
         assertEquals(0, parameters.size());
     }
 
+    @Test
+    public void shouldStreamMembers() {
+        assertThat(type.methods().map(m -> m.getName()).collect(toList())) //
+                .containsOnly("method0", "method1", "method2");
+        assertThat(type.staticMethods().map(m -> m.getName()).collect(toList())).containsExactly("constant");
+        assertThat(type.staticFields().map(f -> f.getName()).collect(toList())).containsExactly("CONSTANT");
+        assertEquals("string", type.fieldsAnnotatedWith(JavaDoc.class).findFirst().get().getName());
+        assertEquals("method1", type.methodsAnnotatedWith(BB.class).findFirst().get().getName());
+        assertFalse(type.fieldsAnnotatedWith(B.class).findAny().isPresent());
+        assertThat(ENV.type(FooNum.class).enumValues().collect(toList())).containsExactly("X", "Y", "Z");
+        assertEquals(0, type.enumValues().count());
+    }
+
+    @Test
+    public void shouldGetAllMethodsWithoutOverridden() {
+        List<Method> methods = ENV.type(Sub.class).getAllMethods();
+
+        List<Method> names = methods.stream().filter(m -> m.getName().equals("name")).collect(toList());
+        assertEquals(1, names.size());
+        assertEquals(ENV.type(Sub.class), names.get(0).getDeclaringType());
+        assertThat(methods).extracting(m -> m.getName()).contains("baseOnly", "greet", "hashCode");
+        assertSame(methods, ENV.type(Sub.class).getAllMethods());
+    }
+
+    @Test
+    public void shouldGetAllFieldsWithoutHidden() {
+        List<Field> fields = ENV.type(Sub.class).getAllFields();
+
+        assertThat(fields).extracting(f -> f.getName()).containsExactly("field", "secret", "secret");
+        assertEquals(ENV.type(Sub.class), fields.get(0).getDeclaringType());
+    }
+
+    @Test
+    public void shouldInvokeAnnotationPropertiesOnlyOnce() {
+        AtomicInteger invocations = new AtomicInteger();
+        B annotation = new B() {
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return B.class;
+            }
+
+            @Override
+            public String value() {
+                invocations.incrementAndGet();
+                return "b";
+            }
+        };
+        AnnotationWrapper wrapper = new ReflectionAnnotationWrapper(annotation, type.round());
+
+        assertEquals("b", wrapper.getStringProperty("value"));
+        assertEquals(singletonList("b"), wrapper.getStringProperties("value"));
+        assertEquals(STRING, wrapper.getPropertyType("value"));
+
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    public void shouldNotExposeCachedArrayValues() {
+        AnnotationWrapper multiA = type.getField("fooNum").getAnnotationWrappers(MultiA.class).get(2);
+
+        ((int[]) multiA.getProperty("inty"))[0] = 0;
+        ((String[]) multiA.getProperty("stringy"))[0] = "x";
+
+        assertArrayEquals(new int[] { 7, 8 }, (int[]) multiA.getProperty("inty"));
+        assertArrayEquals(new int[] { 7, 8 }, multiA.getIntArrayProperty("inty"));
+        assertEquals(asList("s", "t"), multiA.getStringProperties("stringy"));
+    }
+
+    @Test
+    public void shouldViewAnnotation() {
+        Field field = ENV.type(Pojo.class).getField("fooNum");
+
+        MultiView multi = field.getAnnotationWrapper(Multi.class).as(MultiView.class);
+        assertEquals(false, multi.booly());
+        assertEquals(ENV.type(Object.class), multi.classy());
+        assertEquals(7, multi.inty());
+        assertEquals("s", multi.stringy());
+        assertEquals(X, multi.enumy());
+        assertEquals("a", multi.annoty().value());
+
+        MultiAView multiA = field.getAnnotationWrappers(MultiA.class).get(2).as(MultiAView.class);
+        assertEquals(asList(false, true), multiA.booly());
+        assertEquals(asList(ENV.type(Object.class), ENV.type(String.class)), multiA.classy());
+        assertArrayEquals(new int[] { 7, 8 }, multiA.inty());
+        assertArrayEquals(new String[] { "s", "t" }, multiA.stringy());
+        assertArrayEquals(new FooNum[] { Y, Z }, multiA.enumy());
+        assertEquals("b", multiA.annoty().get(1).getStringProperty("value"));
+
+        assertEquals(X, ENV.type(Pojo.class).getField("map").getAnnotationWrapper(FooNumA.class).as(FooNumA.class)
+                .value());
+    }
+
+    @Test
+    public void shouldFailToViewClassProperty() {
+        AnnotationWrapper wrapper = ENV.type(Pojo.class).getField("fooNum").getAnnotationWrapper(Multi.class);
+
+        Throwable thrown = catchThrowable(() -> wrapper.as(ClassView.class));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("use Type instead");
+    }
+
+    @Test
+    public void shouldParseJavaDoc() {
+        JavaDocModel javaDoc = new JavaDocModel("Does {@code foo} in version 1.2. See {@link Bar}.\n" //
+                + "More details.\n" //
+                + "@param foo the foo\n" //
+                + "  spanning lines\n" //
+                + "@return the result\n" //
+                + "@throws IOException on error\n" //
+                + "@custom tag");
+
+        assertEquals("Does {@code foo} in version 1.2", javaDoc.getSummary());
+        assertEquals("Does {@code foo} in version 1.2. See {@link Bar}.\nMore details.", javaDoc.getBody());
+        assertEquals("the foo\nspanning lines", javaDoc.getParam("foo"));
+        assertNull(javaDoc.getParam("bar"));
+        assertEquals("the result", javaDoc.getReturn());
+        assertEquals("on error", javaDoc.getThrows("IOException"));
+        assertThat(javaDoc.getBlockTags()).extracting(t -> t.getName()).containsExactly("param", "return", "throws",
+                "custom");
+        assertEquals("tag", javaDoc.getBlockTags("custom").get(0).getText());
+        assertThat(javaDoc.getInlineTags()).extracting(t -> t.toString()).containsExactly("@code foo", "@link Bar");
+    }
+
+    @Test
+    public void shouldFallBackToMethodJavaDocForParameters() {
+        class Documented {
+            @SuppressWarnings("unused")
+            @JavaDoc("Greets.\n@param name whom to greet")
+            public void greet(String name, String other) {}
+        }
+        Method method = ENV.type(Documented.class).getMethod("greet");
+
+        JavaDocModel name = method.getParameter(0).getJavaDoc();
+
+        assertEquals("whom to greet", name.getSummary());
+        assertSame(name, method.getParameter(0).getJavaDoc());
+        assertNull(method.getParameter(1).getJavaDoc());
+        assertNull(method.getParameter(1).getJavaDoc());
+        assertEquals("Greets", JavaDoc.SUMMARY.apply(method.getAnnotation(JavaDoc.class)));
+    }
+
+    @Test
+    public void shouldFindAnnotationsInTypeHierarchy() {
+        Type sub = ENV.type(Sub.class);
+
+        assertThat(sub.getAnnotationWrappers(B.class)).isEmpty();
+        assertThat(sub.findAnnotationWrappers(B.class)).extracting(b -> b.getStringProperty("value"))
+                .containsExactly("base");
+        assertThat(sub.findAnnotationWrappers(A.class)).isEmpty();
+        assertThat(ENV.type(Greeter.class).findAnnotationWrappers(B.class)).hasSize(1);
+    }
+
+    @Test
+    public void shouldFindAnnotationsOnOverriddenMethods() {
+        Method name = ENV.type(Sub.class).getMethod("name");
+
+        assertThat(name.getAnnotationWrappers(A.class)).isEmpty();
+        assertThat(name.findAnnotationWrappers(A.class)).extracting(a -> a.getStringProperty("value"))
+                .containsExactly("name");
+        assertThat(ENV.type(Base.class).getMethod("baseOnly").findAnnotationWrappers(A.class)).isEmpty();
+    }
+
+    @Test
+    public void shouldResolveStereotypes() {
+        Type stereotyped = ENV.type(Stereotyped.class);
+
+        assertTrue(stereotyped.isMetaAnnotated(SuperStereotype.class));
+        assertTrue(stereotyped.isMetaAnnotated(Stereotype.class));
+        assertTrue(stereotyped.isMetaAnnotated(Marker.class));
+        assertFalse(stereotyped.isMetaAnnotated(A.class));
+        assertThat(stereotyped.getStereotypes(Marker.class)).extracting(a -> a.getAnnotationType())
+                .containsExactly(ENV.type(SuperStereotype.class));
+        assertThat(stereotyped.getStereotypes(A.class)).isEmpty();
+    }
+
+    @Test
+    public void shouldGetSupertypeNames() {
+        assertThat(ENV.type(Sub.class).getSupertypeNames()).containsOnly(Sub.class.getCanonicalName(),
+                Base.class.getCanonicalName(), Greeter.class.getCanonicalName(), Object.class.getName());
+        assertThat(ENV.type(int.class).getSupertypeNames()).containsOnly("int");
+    }
+
+    @Test
+    public void shouldSnapshotType() throws Exception {
+        Snapshot snapshot = Snapshot.of(singletonList(ENV.type(Pojo.class)));
+        Type pojo = snapshot.getTypes().get(0);
+
+        Callable<Void> check = () -> {
+            assertEquals("ReflectionTest.Pojo", pojo.getRelativeName());
+            assertEquals("com.github.t1.exap.reflection", pojo.getPackage().getName());
+            assertTrue(pojo.isPublic());
+            assertTrue(pojo.isStatic());
+            assertThat(pojo.getFields()).extracting(f -> f.getName()).containsExactly("bool", "string", "map",
+                    "fooNum");
+            assertThat(pojo.getMethod("method1").getParameters()).extracting(p -> p.getName())
+                    .containsExactly("string", "bool", "strings");
+            assertEquals("ppp", pojo.getMethod("method1").getParameters().get(1).getAnnotationWrapper(A.class)
+                    .getStringProperty("value"));
+            assertThat(pojo.getMethod("method0").getAnnotationWrappers(A.class))
+                    .extracting(a -> a.getStringProperty("value")).containsExactly("mmm", "nnn");
+
+            Field fooNum = pojo.getField("fooNum");
+            assertTrue(fooNum.isTransient());
+            assertTrue(fooNum.getType().isEnum());
+            assertThat(fooNum.getType().getEnumValues()).containsExactly("X", "Y", "Z");
+            AnnotationWrapper multi = fooNum.getAnnotationWrapper(Multi.class);
+            assertEquals(7, multi.getIntProperty("inty"));
+            assertEquals("X", multi.getEnumProperty("enumy"));
+            assertEquals("java.lang.Object", multi.getTypeProperty("classy").getFullName());
+            assertEquals("a", multi.getAnnotationProperty("annoty").getStringProperty("value"));
+            assertEquals(X, multi.as(MultiView.class).enumy());
+            AnnotationWrapper multiA = fooNum.getAnnotationWrappers(MultiA.class).get(2);
+            assertArrayEquals(new int[] { 7, 8 }, multiA.getIntArrayProperty("inty"));
+            assertEquals(asList("Y", "Z"), multiA.getEnumProperties("enumy"));
+            assertEquals(INT, multiA.getPropertyType("inty"));
+            return null;
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (Future<Void> future : executor.invokeAll(asList(check, check)))
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+
+        Throwable thrown = catchThrowable(() -> pojo.getField("map").getType().getFields());
+        assertThat(thrown).isInstanceOf(UnsupportedOperationException.class)
+                .hasMessageContaining("not in the snapshot");
+    }
+
+    @Test
+    public void shouldDetachSnapshotsFromTheRound() throws Exception {
+        Snapshot snapshot = Snapshot.of(singletonList(ENV.type(Pojo.class)));
+        Type pojo = snapshot.getTypes().get(0);
+        Method method = pojo.getMethod("method1");
+        Field field = pojo.getField("string");
+        List<Elemental> elements = asList(pojo, field.getType(), method, method.getParameter(1), field,
+                pojo.getPackage(), field.getAnnotationWrapper(A.class));
+
+        List<String> failures = new ArrayList<>();
+        for (Elemental element : elements)
+            for (java.lang.reflect.Method accessor : element.getClass().getMethods())
+                if (accessor.getDeclaringClass() != Object.class && !isStatic(accessor.getModifiers()))
+                    failures.addAll(invoke(element, accessor, pojo));
+
+        assertEquals(emptyList(), failures);
+        Throwable thrown = catchThrowable(() -> pojo.round());
+        assertThat(thrown).isInstanceOf(UnsupportedOperationException.class)
+                .hasMessage("the elements of a snapshot are detached from the round");
+    }
+
+    /** Only deliberate failures are okay, not calls that fall through to the dummy compiler model */
+    private static List<String> invoke(Elemental element, java.lang.reflect.Method accessor, Type pojo) {
+        Object[] args = new Object[accessor.getParameterCount()];
+        for (int i = 0; i < args.length; i++)
+            args[i] = argument(accessor.getParameterTypes()[i], pojo);
+        try {
+            Object result = accessor.invoke(element, args);
+            if (result instanceof java.util.stream.BaseStream)
+                ((java.util.stream.BaseStream<?, ?>) result).iterator().forEachRemaining(item -> {});
+            return emptyList();
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause())
+                if (cause instanceof NullPointerException || String.valueOf(cause.getMessage())
+                        .startsWith("invoked unsupported proxy method"))
+                    return singletonList(element + "." + accessor.getName() + ": " + cause);
+            return emptyList();
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Object argument(Class<?> type, Type pojo) {
+        if (type == String.class || type == CharSequence.class)
+            return "value";
+        if (type == int.class)
+            return 0;
+        if (type == Class.class)
+            return A.class;
+        if (type == Type.class || type == Object.class)
+            return pojo;
+        if (type == Elemental[].class)
+            return new Elemental[0];
+        if (type == TypeVisitor.class)
+            return new TypeVisitor() {};
+        if (type == GenerationBatch.class)
+            return new GenerationBatch(pojo.log());
+        throw new IllegalArgumentException("no argument for " + type);
+    }
+
     @Test
     public void shouldVisitType() {
         AtomicInteger count = new AtomicInteger();